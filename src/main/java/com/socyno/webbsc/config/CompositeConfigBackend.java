@@ -0,0 +1,434 @@
+package com.socyno.webbsc.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.socyno.base.bscexec.MessageException;
+import com.socyno.base.bscmixutil.StringUtils;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 分层的配置存储：按给定的顺序叠加多个配置来源（如内置默认值、数据库、本地配置文件、环境变量
+ * 或系统属性），后面的层覆盖前面的层。
+ *
+ * 各层按各自的间隔检查是否变化，任意一层变化时重新生成合并后的只读索引，查询配置时仅需
+ * 读取该索引。修改配置时写入唯一的可写层（通过 backend 创建的层），若该配置被更高优先级
+ * 的层覆盖，修改不会生效（记录警告日志）。
+ *
+ * 如下例中的优先级由低到高依次为：内置默认值、数据库、本地配置文件、系统属性，即本地配置文件
+ * 可覆盖数据库中的配置，系统属性可覆盖其他所有层。
+ *
+ * <pre>
+ *   new CompositeConfigBackend(
+ *       CompositeConfigBackend.defaults(defaults),
+ *       CompositeConfigBackend.backend(new DBConfigBackend(dao)),
+ *       CompositeConfigBackend.propertiesFile(Paths.get("/etc/app/override.properties"), 10000),
+ *       CompositeConfigBackend.systemProperties("system.", 30000)
+ *   );
+ * </pre>
+ */
+@Slf4j
+public class CompositeConfigBackend implements ConfigBackend {
+    
+    /**
+     * 配置层
+     */
+    public abstract static class Layer {
+        
+        @Getter
+        private final String name;
+        
+        /**
+         * 检查变化的间隔（毫秒），小于等于 0 时仅在调用 reload 时检查
+         */
+        @Getter
+        private final long reloadMS;
+        
+        private volatile Map<String, ConfigItem> configs = Collections.emptyMap();
+        
+        protected Layer(@NonNull String name, long reloadMS) {
+            this.name = name;
+            this.reloadMS = reloadMS;
+        }
+        
+        /**
+         * 加载本层的配置
+         *
+         * @param force 是否强制重新加载
+         * @return 配置未变化时返回 null
+         */
+        protected abstract Map<String, ConfigItem> load(boolean force) throws Exception;
+        
+        /**
+         * 重新加载，返回配置是否有变化
+         */
+        synchronized boolean refresh(boolean force) throws Exception {
+            Map<String, ConfigItem> loaded;
+            if ((loaded = load(force)) == null) {
+                return false;
+            }
+            configs = loaded;
+            return true;
+        }
+        
+        public Map<String, ConfigItem> getConfigs() {
+            return configs;
+        }
+    }
+    
+    /**
+     * 以其他配置存储作为配置层，该层可写
+     */
+    private static class BackendLayer extends Layer {
+        
+        private final ConfigBackend backend;
+        
+        private long loadedVersion = -1;
+        
+        private BackendLayer(ConfigBackend backend, long reloadMS) {
+            super(backend.getClass().getSimpleName(), reloadMS);
+            this.backend = backend;
+        }
+        
+        @Override
+        protected Map<String, ConfigItem> load(boolean force) throws Exception {
+            if (force) {
+                backend.reload();
+            }
+            Map<String, ConfigItem> loaded = new HashMap<String, ConfigItem>();
+            if (backend instanceof DBConfigBackend) {
+                /* 快照版本未变化时，无需遍历配置；变化时遍历同一快照，保证配置与记录的版本一致 */
+                DBConfigBackend dbBackend = (DBConfigBackend) backend;
+                DBConfigBackend.Snapshot snapshot = dbBackend.getSnapshot();
+                if (snapshot.getVersion() == loadedVersion) {
+                    return null;
+                }
+                for (ConfigItem item : dbBackend.getInitConfigs().values()) {
+                    putConfig(loaded, item);
+                }
+                for (ConfigItem item : snapshot.getConfigs().values()) {
+                    putConfig(loaded, item);
+                }
+                loadedVersion = snapshot.getVersion();
+            } else {
+                for (String key : backend.getConfigKeys()) {
+                    putConfig(loaded, backend.getConfig(key));
+                }
+            }
+            return sameConfigs(getConfigs(), loaded) ? null : Collections.unmodifiableMap(loaded);
+        }
+        
+        private static void putConfig(Map<String, ConfigItem> loaded, ConfigItem item) {
+            /* 值为 null 的配置（已删除）不覆盖低优先级的层 */
+            if (item != null && item.getValue() != null) {
+                loaded.put(item.getName(), item);
+            }
+        }
+    }
+    
+    private final List<Layer> layers;
+    
+    private final BackendLayer writable;
+    
+    private volatile Map<String, ConfigItem> merged = Collections.emptyMap();
+    
+    private final ScheduledExecutorService scheduledService = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "composite-config-reloader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    
+    /**
+     * @param layers 配置层，按优先级由低到高排列，至多包含一个可写层
+     */
+    public CompositeConfigBackend(@NonNull Layer... layers) throws Exception {
+        this(Arrays.asList(layers));
+    }
+    
+    public CompositeConfigBackend(@NonNull List<Layer> layers) throws Exception {
+        BackendLayer writable = null;
+        for (Layer layer : layers) {
+            if (!(layer instanceof BackendLayer)) {
+                continue;
+            }
+            if (writable != null) {
+                throw new MessageException("分层配置中至多包含一个可写层");
+            }
+            writable = (BackendLayer) layer;
+        }
+        this.writable = writable;
+        this.layers = Collections.unmodifiableList(new ArrayList<Layer>(layers));
+        for (Layer layer : this.layers) {
+            layer.refresh(false);
+        }
+        rebuild();
+        for (final Layer layer : this.layers) {
+            if (layer.getReloadMS() <= 0) {
+                continue;
+            }
+            scheduledService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (layer.refresh(false)) {
+                            log.info("Config layer {} has been changed.", layer.getName());
+                            rebuild();
+                        }
+                    } catch (Exception e) {
+                        log.error(String.format("Failed to reload config layer %s.", layer.getName()), e);
+                    }
+                }
+            }, layer.getReloadMS(), layer.getReloadMS(), TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * 重新生成合并后的索引
+     */
+    private synchronized void rebuild() {
+        Map<String, ConfigItem> configs = new HashMap<String, ConfigItem>();
+        for (Layer layer : layers) {
+            configs.putAll(layer.getConfigs());
+        }
+        merged = Collections.unmodifiableMap(configs);
+    }
+    
+    private static boolean sameConfigs(Map<String, ConfigItem> a, Map<String, ConfigItem> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (Entry<String, ConfigItem> e : b.entrySet()) {
+            ConfigItem item;
+            if ((item = a.get(e.getKey())) == null || (item != e.getValue()
+                    && (!StringUtils.equals(item.getValue(), e.getValue().getValue())
+                            || !StringUtils.equals(item.getComment(), e.getValue().getComment())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static Map<String, ConfigItem> toConfigs(Map<String, String> values) {
+        Map<String, ConfigItem> configs = new HashMap<String, ConfigItem>();
+        for (Entry<String, String> e : values.entrySet()) {
+            if (e.getKey() != null && e.getValue() != null) {
+                configs.put(e.getKey(), new ConfigItem().setName(e.getKey()).setValue(e.getValue()));
+            }
+        }
+        return Collections.unmodifiableMap(configs);
+    }
+    
+    /**
+     * 内置默认值，不会重新加载
+     */
+    public static Layer defaults(@NonNull final Map<String, String> values) {
+        final Map<String, ConfigItem> configs = toConfigs(values);
+        return new Layer("defaults", 0) {
+            @Override
+            protected Map<String, ConfigItem> load(boolean force) {
+                return getConfigs() == configs ? null : configs;
+            }
+        };
+    }
+    
+    /**
+     * 本地配置文件（properties 格式），仅在文件的修改时间或大小变化时重新读取，文件不存在时为空
+     */
+    public static Layer propertiesFile(@NonNull final Path file, long reloadMS) {
+        return new Layer(String.format("file:%s", file), reloadMS) {
+            private long loadedModified = -1;
+            private long loadedSize = -1;
+            
+            @Override
+            protected Map<String, ConfigItem> load(boolean force) throws IOException {
+                long modified;
+                long size;
+                try {
+                    modified = Files.getLastModifiedTime(file).toMillis();
+                    size = Files.size(file);
+                } catch (NoSuchFileException e) {
+                    modified = size = 0;
+                }
+                if (!force && modified == loadedModified && size == loadedSize) {
+                    return null;
+                }
+                Properties properties = new Properties();
+                if (size > 0) {
+                    InputStream input = Files.newInputStream(file);
+                    try {
+                        properties.load(input);
+                    } finally {
+                        input.close();
+                    }
+                }
+                Map<String, String> values = new HashMap<String, String>();
+                for (String name : properties.stringPropertyNames()) {
+                    values.put(name, properties.getProperty(name));
+                }
+                loadedModified = modified;
+                loadedSize = size;
+                Map<String, ConfigItem> configs = toConfigs(values);
+                return sameConfigs(getConfigs(), configs) ? null : configs;
+            }
+        };
+    }
+    
+    /**
+     * 系统属性（-Dname=value）中以指定前缀开头的配置
+     */
+    public static Layer systemProperties(@NonNull final String prefix, long reloadMS) {
+        return new Layer(String.format("system:%s", prefix), reloadMS) {
+            @Override
+            protected Map<String, ConfigItem> load(boolean force) {
+                Map<String, String> values = new HashMap<String, String>();
+                Properties properties = System.getProperties();
+                for (String name : properties.stringPropertyNames()) {
+                    if (name.startsWith(prefix)) {
+                        values.put(name, properties.getProperty(name));
+                    }
+                }
+                Map<String, ConfigItem> configs = toConfigs(values);
+                return sameConfigs(getConfigs(), configs) ? null : configs;
+            }
+        };
+    }
+    
+    /**
+     * 环境变量中以指定前缀开头的配置。去除前缀后转为小写，并将下划线替换为点号作为配置名称，
+     * 如前缀为 SOCYNO_ 时，SOCYNO_SYSTEM_BASIC_DEBUG_ENABLED 对应 system.basic.debug.enabled。
+     * 环境变量在进程运行期间不会变化，因此仅加载一次。
+     */
+    public static Layer environment(@NonNull final String prefix) {
+        return new Layer(String.format("env:%s", prefix), 0) {
+            @Override
+            protected Map<String, ConfigItem> load(boolean force) {
+                if (!force && !getConfigs().isEmpty()) {
+                    return null;
+                }
+                Map<String, String> values = new HashMap<String, String>();
+                for (Entry<String, String> e : System.getenv().entrySet()) {
+                    if (e.getKey().startsWith(prefix) && e.getKey().length() > prefix.length()) {
+                        values.put(e.getKey().substring(prefix.length()).toLowerCase().replace('_', '.'),
+                                e.getValue());
+                    }
+                }
+                Map<String, ConfigItem> configs = toConfigs(values);
+                return sameConfigs(getConfigs(), configs) ? null : configs;
+            }
+        };
+    }
+    
+    /**
+     * 以其他配置存储（如 DBConfigBackend）作为可写的配置层。
+     *
+     * 注意所代理的存储仍按其自身的方式定期加载全部配置（包括被更高优先级的层覆盖的配置），
+     * 如 DBConfigBackend 未启用版本号时每次均全量加载，启用后仍会定期全量加载以作校正。
+     *
+     * @param reloadMS 检查变化的间隔（毫秒），所代理的存储自身的定期加载不受影响
+     */
+    public static Layer backend(@NonNull ConfigBackend backend, long reloadMS) {
+        return new BackendLayer(backend, reloadMS);
+    }
+    
+    public static Layer backend(@NonNull ConfigBackend backend) {
+        return backend(backend, 1000);
+    }
+    
+    private ConfigBackend getWritableBackend() {
+        if (writable == null) {
+            throw new MessageException("分层配置中不存在可写层，无法修改配置");
+        }
+        return writable.backend;
+    }
+    
+    /**
+     * 修改后立即刷新可写层及合并后的索引
+     */
+    private void afterWrite(Collection<String> names) throws Exception {
+        if (writable.refresh(false)) {
+            rebuild();
+        }
+        Map<String, ConfigItem> writableConfigs = writable.getConfigs();
+        Map<String, ConfigItem> current = merged;
+        for (String name : names) {
+            ConfigItem item;
+            if ((item = current.get(name)) != null && item != writableConfigs.get(name)) {
+                log.warn("Config {} is overridden by a higher priority layer, the change takes no effect.", name);
+            }
+        }
+    }
+    
+    @Override
+    public void reload() throws Exception {
+        boolean changed = false;
+        for (Layer layer : layers) {
+            changed |= layer.refresh(true);
+        }
+        if (changed) {
+            rebuild();
+        }
+    }
+    
+    @Override
+    public List<String> getConfigKeys() {
+        return new ArrayList<String>(merged.keySet());
+    }
+    
+    @Override
+    public ConfigItem getConfig(String name) {
+        return merged.get(name);
+    }
+    
+    @Override
+    public ConfigItem setConfig(ConfigItem config) throws Exception {
+        ConfigItem origin = getConfig(config.getName());
+        getWritableBackend().setConfig(config);
+        afterWrite(Collections.singletonList(config.getName()));
+        return origin;
+    }
+    
+    @Override
+    public void setConfigs(Collection<ConfigItem> configs) throws Exception {
+        if (configs == null || configs.isEmpty()) {
+            return;
+        }
+        getWritableBackend().setConfigs(configs);
+        List<String> names = new ArrayList<String>(configs.size());
+        for (ConfigItem c : configs) {
+            names.add(c.getName());
+        }
+        afterWrite(names);
+    }
+    
+    @Override
+    public void deleteConfigs(String... names) throws Exception {
+        if (names == null || names.length <= 0) {
+            return;
+        }
+        getWritableBackend().deleteConfigs(names);
+        afterWrite(Arrays.asList(names));
+    }
+}
@@ -1,5 +1,6 @@
 package com.socyno.webbsc.config;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ConfigBackend {
@@ -8,4 +9,16 @@ public interface ConfigBackend {
     public void deleteConfigs(String ...name) throws Exception;
     public ConfigItem getConfig(String name);
     public ConfigItem setConfig(ConfigItem config) throws Exception;
+    
+    /**
+     * 批量设置配置，值为 null 的配置将被删除。默认逐个调用 setConfig，支持批量写入的实现应覆盖此方法
+     */
+    public default void setConfigs(Collection<ConfigItem> configs) throws Exception {
+        if (configs == null) {
+            return;
+        }
+        for (ConfigItem c : configs) {
+            setConfig(c);
+        }
+    }
 }
@@ -0,0 +1,345 @@
+package com.socyno.webbsc.config;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.reflect.TypeToken;
+import com.socyno.base.bscmixutil.JsonUtil;
+import com.socyno.base.bscmixutil.StringUtils;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 强类型的配置项：声明配置名称、默认值及解析方式，解析结果缓存在 volatile 字段中，仅在
+ * 配置项（ConfigItem）变化时重新解析，适用于请求处理过程中频繁读取的配置。
+ *
+ * 配置未定义、为空白串或解析失败时返回默认值（解析失败时记录警告日志）。
+ *
+ * 注册了变更监听的配置项，在通过 ConfigService 修改或重新加载配置后，以及每隔 10 秒
+ * （感知其他节点的修改）检查一次，值变化时依次通知监听者。
+ *
+ * <pre>
+ *   private final static ConfigKey&lt;Long&gt; EXPIRATION = ConfigKey.ofLong("system.session.token.expiration", 72000000L);
+ *   ...
+ *   long expiration = EXPIRATION.get();
+ * </pre>
+ */
+@Slf4j
+public class ConfigKey<T> {
+    
+    private final static long WATCH_INTERVAL_MS = 10000;
+    
+    private final static Pattern REGEXP_DURATION = Pattern.compile("^(\\d+)\\s*(ms|s|m|h|d)?$",
+            Pattern.CASE_INSENSITIVE);
+    
+    private final static Set<ConfigKey<?>> WATCHED_KEYS = Collections
+            .newSetFromMap(new ConcurrentHashMap<ConfigKey<?>, Boolean>());
+    
+    private static ScheduledExecutorService watcher = null;
+    
+    /**
+     * 配置值解析器，传入的配置值非空白串
+     */
+    public static interface Parser<T> {
+        T parse(String value) throws Exception;
+    }
+    
+    /**
+     * 配置变更监听
+     */
+    public static interface Listener<T> {
+        void changed(ConfigKey<T> key, T oldValue, T newValue);
+    }
+    
+    /**
+     * 解析结果，记录解析时的配置项及原始值
+     */
+    private static class Parsed<T> {
+        private final ConfigItem item;
+        private final String source;
+        private final T value;
+        
+        private Parsed(ConfigItem item, String source, T value) {
+            this.item = item;
+            this.source = source;
+            this.value = value;
+        }
+    }
+    
+    @Getter
+    private final String name;
+    
+    @Getter
+    private final T defaultValue;
+    
+    private final Parser<T> parser;
+    
+    private volatile Parsed<T> parsed = null;
+    
+    private final List<Listener<T>> listeners = new CopyOnWriteArrayList<Listener<T>>();
+    
+    public ConfigKey(@NonNull String name, T defaultValue, @NonNull Parser<T> parser) {
+        this.name = name;
+        this.defaultValue = defaultValue;
+        this.parser = parser;
+    }
+    
+    /**
+     * 获取配置的当前值
+     */
+    public T get() {
+        ConfigItem item = getConfigItem();
+        Parsed<T> current;
+        if ((current = parsed) != null && current.item == item) {
+            return current.value;
+        }
+        return refresh(item);
+    }
+    
+    /**
+     * 注册变更监听，在配置值变化时（非首次加载）被调用
+     */
+    public ConfigKey<T> addListener(@NonNull Listener<T> listener) {
+        listeners.add(listener);
+        if (parsed == null) {
+            refresh(getConfigItem());
+        }
+        WATCHED_KEYS.add(this);
+        startWatcher();
+        return this;
+    }
+    
+    public void removeListener(Listener<T> listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            WATCHED_KEYS.remove(this);
+        }
+    }
+    
+    private ConfigItem getConfigItem() {
+        ConfigService service;
+        if ((service = PropertyPlaceholderLoader.getConfigService()) == null || service.getBackend() == null) {
+            return null;
+        }
+        return service.getConfig(name);
+    }
+    
+    private T refresh(ConfigItem item) {
+        Parsed<T> previous;
+        Parsed<T> current;
+        synchronized (this) {
+            if ((previous = parsed) != null && previous.item == item) {
+                return previous.value;
+            }
+            String source = item == null ? null : item.getValue();
+            if (previous != null && StringUtils.equals(previous.source, source)) {
+                /* 配置项被重新加载，但值未变化，无需重新解析 */
+                parsed = new Parsed<T>(item, source, previous.value);
+                return previous.value;
+            }
+            parsed = current = new Parsed<T>(item, source, parse(source));
+        }
+        if (previous != null && !Objects.equals(previous.value, current.value)) {
+            for (Listener<T> listener : listeners) {
+                try {
+                    listener.changed(this, previous.value, current.value);
+                } catch (Exception e) {
+                    log.error(String.format("Config %s change listener failed.", name), e);
+                }
+            }
+        }
+        return current.value;
+    }
+    
+    private T parse(String source) {
+        if (StringUtils.isBlank(source)) {
+            return defaultValue;
+        }
+        try {
+            T value;
+            return (value = parser.parse(source)) == null ? defaultValue : value;
+        } catch (Exception e) {
+            log.warn("Config {} is invalid, default value used : {}", name, e.toString());
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * 检查所有注册了变更监听的配置项，值变化时通知监听者
+     */
+    static void refreshWatched() {
+        for (ConfigKey<?> key : WATCHED_KEYS) {
+            try {
+                key.get();
+            } catch (Exception e) {
+                log.error(String.format("Config %s refresh failed.", key.getName()), e);
+            }
+        }
+    }
+    
+    synchronized private static void startWatcher() {
+        if (watcher != null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "config-key-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshWatched();
+            }
+        }, WATCH_INTERVAL_MS, WATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 字符串配置（去除首尾空白）
+     */
+    public static ConfigKey<String> ofString(String name, String defaultValue) {
+        return new ConfigKey<String>(name, defaultValue, new Parser<String>() {
+            @Override
+            public String parse(String value) {
+                return value.trim();
+            }
+        });
+    }
+    
+    public static ConfigKey<Long> ofLong(String name, Long defaultValue) {
+        return new ConfigKey<Long>(name, defaultValue, new Parser<Long>() {
+            @Override
+            public Long parse(String value) {
+                return Long.valueOf(value.trim());
+            }
+        });
+    }
+    
+    public static ConfigKey<Integer> ofInteger(String name, Integer defaultValue) {
+        return new ConfigKey<Integer>(name, defaultValue, new Parser<Integer>() {
+            @Override
+            public Integer parse(String value) {
+                return Integer.valueOf(value.trim());
+            }
+        });
+    }
+    
+    /**
+     * 布尔配置，yes/true/on/1 为真（不区分大小写），其余为假
+     */
+    public static ConfigKey<Boolean> ofBoolean(String name, Boolean defaultValue) {
+        return new ConfigKey<Boolean>(name, defaultValue, new Parser<Boolean>() {
+            @Override
+            public Boolean parse(String value) {
+                value = value.trim();
+                return "yes".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value)
+                        || "on".equalsIgnoreCase(value) || "1".equals(value);
+            }
+        });
+    }
+    
+    /**
+     * 时长配置（以毫秒返回），支持 ms、s、m、h、d 单位，无单位时为毫秒，如 500、30s、5m
+     */
+    public static ConfigKey<Long> ofDuration(String name, Long defaultMS) {
+        return new ConfigKey<Long>(name, defaultMS, new Parser<Long>() {
+            @Override
+            public Long parse(String value) {
+                Matcher matcher;
+                if (!(matcher = REGEXP_DURATION.matcher(value.trim())).find()) {
+                    throw new IllegalArgumentException(String.format("Invalid duration : %s", value));
+                }
+                long amount = Long.parseLong(matcher.group(1));
+                String unit = StringUtils.lowerCase(matcher.group(2));
+                if ("s".equals(unit)) {
+                    return TimeUnit.SECONDS.toMillis(amount);
+                } else if ("m".equals(unit)) {
+                    return TimeUnit.MINUTES.toMillis(amount);
+                } else if ("h".equals(unit)) {
+                    return TimeUnit.HOURS.toMillis(amount);
+                } else if ("d".equals(unit)) {
+                    return TimeUnit.DAYS.toMillis(amount);
+                }
+                return amount;
+            }
+        });
+    }
+    
+    /**
+     * 按指定分隔符拆分的集合配置，各项去除首尾空白并忽略空白项，结果不可修改
+     *
+     * @param regex 分隔符（正则表达式，同 ConfigService.getValues）
+     * @param flags 附加的处理标记，参见 ConfigFlags（如 LOWER）
+     */
+    public static ConfigKey<Set<String>> ofStringSet(String name, @NonNull final String regex, final int flags) {
+        return new ConfigKey<Set<String>>(name, Collections.<String>emptySet(), new Parser<Set<String>>() {
+            @Override
+            public Set<String> parse(String value) {
+                Set<String> values = new LinkedHashSet<String>();
+                for (String v : value.split(regex)) {
+                    if (StringUtils.isBlank(v = v.trim())) {
+                        continue;
+                    }
+                    if ((flags & ConfigFlags.LOWER) != 0) {
+                        v = v.toLowerCase();
+                    } else if ((flags & ConfigFlags.UPPER) != 0) {
+                        v = v.toUpperCase();
+                    }
+                    if ((flags & ConfigFlags.PATHEND) != 0 && !v.endsWith("/")) {
+                        v = String.format("%s/", v);
+                    }
+                    values.add(v);
+                }
+                return Collections.unmodifiableSet(values);
+            }
+        });
+    }
+    
+    /**
+     * 以简单字串散列的形式执行 JSON 反序列化的配置（同 ContextUtil.getConfigAsStringMap），结果不可修改
+     */
+    public static ConfigKey<Map<String, String>> ofStringMap(String name) {
+        return new ConfigKey<Map<String, String>>(name, Collections.<String, String>emptyMap(),
+                new Parser<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> parse(String value) {
+                        Map<String, String> map = JsonUtil.fromJson(value,
+                                new TypeToken<Map<String, String>>() {}.getType());
+                        return map == null ? null : Collections.unmodifiableMap(map);
+                    }
+                });
+    }
+    
+    /**
+     * 正则表达式配置，返回预编译的 Pattern
+     *
+     * @param defaultRegex 默认的正则表达式，可为 null
+     * @param flags        编译标记，参见 Pattern.compile
+     */
+    public static ConfigKey<Pattern> ofPattern(String name, String defaultRegex, final int flags) {
+        return new ConfigKey<Pattern>(name, defaultRegex == null ? null : Pattern.compile(defaultRegex, flags),
+                new Parser<Pattern>() {
+                    @Override
+                    public Pattern parse(String value) {
+                        return Pattern.compile(value.trim(), flags);
+                    }
+                });
+    }
+}
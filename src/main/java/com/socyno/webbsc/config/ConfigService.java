@@ -1,7 +1,10 @@
 package com.socyno.webbsc.config;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import com.socyno.base.bscmixutil.StringUtils;
@@ -14,6 +17,28 @@ public class ConfigService {
     
     private final static Pattern REGEXP_CONFIG_KEY = Pattern.compile("^[a-z0-9_\\.\\-]+$", Pattern.CASE_INSENSITIVE);
     
+    private final static String[] EMPTY_VALUES = new String[0];
+    
+    /**
+     * 拆分结果缓存，记录拆分时的原始值。原始值变化（后端重新加载或修改配置）后，
+     * 缓存自动失效并在下次访问时重新拆分，因此无需与后端的加载过程同步。
+     */
+    private static class SplitValues {
+        private final String source;
+        private final String[] values;
+        
+        private SplitValues(String source, String[] values) {
+            this.source = source;
+            this.values = values;
+        }
+    }
+    
+    /**
+     * 配置项 => 分隔正则 => 处理标记 => 拆分结果
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Integer, SplitValues>>> splitCache
+            = new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<Integer, SplitValues>>>();
+    
     public ConfigBackend getBackend() {
         return backend;
     };
@@ -39,6 +64,27 @@ public class ConfigService {
             throw new InvalidConfigKeyException(String.format("key = %s", c.getName()));
         }
         getBackend().setConfig(c);
+        splitCache.remove(c.getName());
+        ConfigKey.refreshWatched();
+    }
+    
+    /**
+     * 批量设置配置，在一个事务中完成写入
+     */
+    public void setConfigs(Collection<ConfigItem> configs) throws Exception {
+        if (configs == null || configs.isEmpty()) {
+            return;
+        }
+        for (ConfigItem c : configs) {
+            if (c == null || c.getName() == null || !REGEXP_CONFIG_KEY.matcher(c.getName()).find()) {
+                throw new InvalidConfigKeyException(String.format("key = %s", c == null ? null : c.getName()));
+            }
+        }
+        getBackend().setConfigs(configs);
+        for (ConfigItem c : configs) {
+            splitCache.remove(c.getName());
+        }
+        ConfigKey.refreshWatched();
     }
     
     public void setConfig(String name, String value) throws Exception {
@@ -55,6 +101,14 @@ public class ConfigService {
     
     public void deleteConfigs(String... names) throws Exception {
         getBackend().deleteConfigs(names);
+        if (names != null) {
+            for (String name : names) {
+                if (name != null) {
+                    splitCache.remove(name);
+                }
+            }
+        }
+        ConfigKey.refreshWatched();
     }
     
     public List<String> getConfigKeys() {
@@ -63,28 +117,61 @@ public class ConfigService {
     
     public String getValue(String name, int flags) {
         String[] values;
-        if ((values = splitValue(getValue(name), null, flags)).length <= 0) {
+        if ((values = getSplitValues(name, null, flags)).length <= 0) {
             return "";
         }
         return values[0];
     }
     
+    /**
+     * 获取拆分后的配置值，返回的数组为共享的缓存结果，调用方不可修改。
+     */
     public String[] getValues(String name, String regex) {
-        return splitValue(getValue(name), regex, 0);
+        return getSplitValues(name, regex, 0);
     }
     
+    /**
+     * 获取拆分并按标记处理后的配置值，返回的数组为共享的缓存结果，调用方不可修改。
+     */
     public String[] getValues(String name, String regex, int flags) {
-        return splitValue(getValue(name), regex, flags);
+        return getSplitValues(name, regex, flags);
     }
     
     synchronized public void reload() throws Exception {
         getBackend().reload();
+        splitCache.clear();
+        ConfigKey.refreshWatched();
+    }
+    
+    private String[] getSplitValues(String name, String regex, int flags) {
+        String value = getValue(name);
+        if (name == null) {
+            return splitValue(value, regex, flags);
+        }
+        ConcurrentMap<String, ConcurrentMap<Integer, SplitValues>> byRegex;
+        if ((byRegex = splitCache.get(name)) == null) {
+            splitCache.putIfAbsent(name, new ConcurrentHashMap<String, ConcurrentMap<Integer, SplitValues>>());
+            byRegex = splitCache.get(name);
+        }
+        String regexKey = StringUtils.nullToEmpty(regex);
+        ConcurrentMap<Integer, SplitValues> byFlags;
+        if ((byFlags = byRegex.get(regexKey)) == null) {
+            byRegex.putIfAbsent(regexKey, new ConcurrentHashMap<Integer, SplitValues>());
+            byFlags = byRegex.get(regexKey);
+        }
+        SplitValues cached;
+        if ((cached = byFlags.get(flags)) != null && StringUtils.equals(cached.source, value)) {
+            return cached.values;
+        }
+        String[] values = splitValue(value, regex, flags);
+        byFlags.put(flags, new SplitValues(value, values));
+        return values;
     }
     
     private static String[] splitValue(String value, String regex, int flags) {
         value = StringUtils.nullToEmpty(value);
         if (value.isEmpty()) {
-            return new String[0];
+            return EMPTY_VALUES;
         }
         String[] values = regex == null ? new String[] { value } : value.split(regex);
         if (flags == 0) {
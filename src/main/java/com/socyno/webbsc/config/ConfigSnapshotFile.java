@@ -0,0 +1,185 @@
+package com.socyno.webbsc.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 配置的本地快照文件，用于在启动时先行加载最近一次成功加载的配置。
+ *
+ * 文件为二进制格式，末尾为整个内容的 CRC32 校验和：
+ * <pre>
+ *   int     魔数 (SCFG)
+ *   int     格式版本
+ *   string  配置来源（表名）
+ *   long    保存时间
+ *   int     配置项数量
+ *   [string 名称, string 值, string 备注] ...
+ *   long    CRC32
+ * </pre>
+ * 其中 string 为长度（-1 表示 null）加 UTF-8 编码的内容。写入时先写临时文件再替换，
+ * 读取时文件不完整、校验失败、来源不一致或超过最长有效期均视为无快照。
+ */
+@Slf4j
+public class ConfigSnapshotFile {
+    
+    private final static int MAGIC = 0x53434647;
+    
+    private final static int FORMAT_VERSION = 1;
+    
+    private final Path path;
+    
+    private final String source;
+    
+    public ConfigSnapshotFile(@NonNull Path path, @NonNull String source) {
+        this.path = path;
+        this.source = source;
+    }
+    
+    /**
+     * 保存配置快照
+     */
+    public void save(@NonNull Map<String, ConfigItem> configs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        writeString(output, source);
+        output.writeLong(System.currentTimeMillis());
+        output.writeInt(configs.size());
+        for (ConfigItem item : configs.values()) {
+            writeString(output, item.getName());
+            writeString(output, item.getValue());
+            writeString(output, item.getComment());
+        }
+        output.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        output.writeLong(crc.getValue());
+        output.flush();
+        
+        Path parent;
+        if ((parent = path.toAbsolutePath().getParent()) != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * 读取配置快照，不限制快照的保存时间
+     *
+     * @return 快照不存在或无效时返回 null
+     */
+    public Map<String, ConfigItem> load() {
+        return load(0);
+    }
+    
+    /**
+     * 读取配置快照
+     *
+     * @param maxAgeMS 快照的最长有效期，超过时视为无快照，不大于 0 时不限制
+     * @return 快照不存在、无效或已过期时返回 null
+     */
+    public Map<String, ConfigItem> load(long maxAgeMS) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read config snapshot {} : {}", path, e.toString());
+            return null;
+        }
+        if (content.length < 16) {
+            log.warn("Config snapshot {} is truncated, ignored.", path);
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length - 8);
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                log.warn("Config snapshot {} format is unsupported, ignored.", path);
+                return null;
+            }
+            input.skipBytes(content.length - 16);
+            if (input.readLong() != crc.getValue()) {
+                log.warn("Config snapshot {} checksum mismatched, ignored.", path);
+                return null;
+            }
+            input = new DataInputStream(new ByteArrayInputStream(content, 8, content.length - 16));
+            if (!source.equals(readString(input))) {
+                log.warn("Config snapshot {} belongs to another source, ignored.", path);
+                return null;
+            }
+            long ageMS = System.currentTimeMillis() - input.readLong();
+            if (maxAgeMS > 0 && ageMS > maxAgeMS) {
+                log.warn("Config snapshot {} was saved {} seconds ago, older than {} seconds, ignored.", path,
+                        ageMS / 1000, maxAgeMS / 1000);
+                return null;
+            }
+            int count = input.readInt();
+            Map<String, ConfigItem> configs = new HashMap<String, ConfigItem>(Math.max(count, 16));
+            for (int i = 0; i < count; i++) {
+                ConfigItem item = new ConfigItem().setName(readString(input)).setValue(readString(input))
+                        .setComment(readString(input));
+                if (item.getName() != null) {
+                    configs.put(item.getName(), item);
+                }
+            }
+            log.info("Config snapshot {} loaded, {} configs saved {} seconds ago.", path, configs.size(),
+                    ageMS / 1000);
+            return Collections.unmodifiableMap(configs);
+        } catch (IOException e) {
+            log.warn("Config snapshot {} is corrupted, ignored : {}", path, e.toString());
+            return null;
+        }
+    }
+    
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    
+    private static String readString(DataInputStream input) throws IOException {
+        int length;
+        if ((length = input.readInt()) < 0) {
+            return null;
+        }
+        if (length > input.available()) {
+            throw new IOException("Unexpected end of snapshot.");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,18 +1,28 @@
 package com.socyno.webbsc.config;
 
 import java.sql.Connection;
+import java.nio.file.Paths;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.socyno.base.bscexec.MessageException;
 import com.socyno.base.bscmixutil.CommonUtil;
 import com.socyno.base.bscmixutil.StringUtils;
 import com.socyno.base.bscmodel.ObjectMap;
@@ -20,18 +30,168 @@ import com.socyno.base.bscsqlutil.AbstractDao;
 import com.socyno.base.bscsqlutil.AbstractDao.ResultSetProcessor;
 import com.socyno.base.bscsqlutil.SqlQueryUtil;
 
+import lombok.Data;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * 基于数据库表的配置存储，定期重新加载配置。
+ * 
+ * 字段映射（configFieldMapper）仅用于指定配置表的字段名（name、value、comment、version 及
+ * deleted），其他可选项通过 Options 指定。
+ * 
+ * 当字段映射中指定了 version 字段时，启用增量加载模式，此时要求：
+ * <pre>
+ *   1. 配置表包含版本字段（BIGINT，需建索引）及删除标记字段（deleted，TINYINT），
+ *      删除配置时仅设置删除标记（墓碑），以便其他节点感知；
+ *   2. 存在单行的版本计数表（默认为配置表名加 _version 后缀，可通过 Options.versionTable 指定），
+ *      CREATE TABLE system_configs_version (version BIGINT NOT NULL);
+ *      INSERT INTO system_configs_version VALUES (0);
+ * </pre>
+ * 每次修改配置时在同一事务中递增版本计数，并将新的版本号写入被修改的配置行。定期加载时
+ * 仅查询版本计数，有变化时才查询版本号更大的配置行；每小时仍执行一次全量加载，并清理
+ * 上一次全量加载（即一小时以前）时已存在的墓碑记录。此时各节点早已通过增量加载感知了
+ * 这些删除，个别错过的节点也会在其下一次全量加载时移除相应的配置。
+ * 
+ * 当指定了变更日志表（Options.changeLogTable）时，修改配置时在同一事务中记录变更的
+ * 配置名称，各节点每秒轮询一次变更日志（按自增主键的范围查询），仅重新加载发生变更的
+ * 配置，使其他节点的修改能够被及时感知；此时定期加载仅作为兜底，间隔放宽至 10 分钟。
+ * 由于自增主键在插入时分配，而事务并不按主键顺序提交，较小的编号可能在较大的编号之后
+ * 才可见。因此每次轮询都会重新扫描 10 秒前已处理到的编号之后的全部记录，并跳过其中已
+ * 处理过的编号，只要修改配置的事务在 10 秒内提交，其变更就不会被遗漏（更长的事务仍由
+ * 定期加载兜底）。
+ * 变更日志表的结构为：
+ * <pre>
+ *   CREATE TABLE system_configs_changelog (
+ *       id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+ *       name VARCHAR(255) NOT NULL,
+ *       created_at BIGINT NOT NULL
+ *   );
+ * </pre>
+ * 超过一天的变更日志将被定期清理。
+ * 
+ * 当指定了本地快照文件（Options.snapshotFile）时，每次加载或变更配置后将配置保存到
+ * 该文件（参见 ConfigSnapshotFile）。启动时若存在有效的快照，则先行使用快照中的配置，
+ * 并在后台线程中与数据库同步，启动过程不再等待数据库。超过最长有效期（默认 7 天，可通过
+ * Options.snapshotMaxAgeSec 指定，0 表示不限制）的快照将被忽略。
+ * 
+ * 已加载的配置以不可修改的快照形式发布：重新加载或修改配置时，在副本上完成全部变更后
+ * 以原子替换的方式发布新快照，读取时无需加锁，也不会读取到加载了一半的配置。
+ */
 @Slf4j
 public class DBConfigBackend implements ConfigBackend {
     
+    private final static long FULL_RELOAD_INTERVAL_MS = 3600000L;
+    
+    private final static long CHANGE_LOG_POLL_MS = 1000L;
+    
+    private final static long CHANGE_LOG_RELOAD_INTERVAL_MS = 600000L;
+    
+    private final static long CHANGE_LOG_RETENTION_MS = 86400000L;
+    
+    private final static int CHANGE_LOG_BATCH_SIZE = 500;
+    
+    private final static long CHANGE_LOG_RESCAN_MS = 10000L;
+    
+    private final static int UPSERT_BATCH_SIZE = 500;
+    
     private AbstractDao baseDao;
     private final String configTableName;
     private final Map<String, String> configFieldMapper;
+    private final String versionTableName;
+    private final String changeLogTableName;
     private final ScheduledExecutorService scheduledService = Executors.newSingleThreadScheduledExecutor();
     private final Map<String, ConfigItem> initConfigs = new ConcurrentHashMap<String, ConfigItem>();
-    private final Map<String, ConfigItem> loadedConfigs = new ConcurrentHashMap<String, ConfigItem>();
+    private final AtomicReference<Snapshot> loadedConfigs = new AtomicReference<Snapshot>(
+            new Snapshot(0, Collections.<String, ConfigItem>emptyMap()));
+    
+    /**
+     * 配置表字段之外的可选项
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class Options {
+        /**
+         * 版本计数表名，为空时为配置表名加 _version 后缀（仅在启用增量加载时使用）
+         */
+        private String versionTable;
+        
+        /**
+         * 变更日志表名，为空时不记录变更日志
+         */
+        private String changeLogTable;
+        
+        /**
+         * 本地快照文件的路径，为空时不保存快照
+         */
+        private String snapshotFile;
+        
+        /**
+         * 本地快照的最长有效期（秒），默认为 7 天，不大于 0 时不限制
+         */
+        private long snapshotMaxAgeSec = 7 * 86400L;
+    }
+    
+    /**
+     * 已加载配置的快照，每次发布新快照时版本号加 1
+     */
+    public static class Snapshot {
+        @Getter
+        private final long version;
+        
+        @Getter
+        private final Map<String, ConfigItem> configs;
+        
+        private Snapshot(long version, Map<String, ConfigItem> configs) {
+            this.version = version;
+            this.configs = configs;
+        }
+    }
+    
+    /**
+     * 在快照副本上执行的变更
+     */
+    private static interface SnapshotUpdater {
+        /**
+         * @return 是否有变更，无变更时不发布新快照
+         */
+        boolean update(Map<String, ConfigItem> configs);
+    }
+    
+    /**
+     * 增量加载模式下，已加载的版本号及最近一次全量加载的时间
+     */
+    private long loadedVersion = -1;
+    private long fullReloadedAt = 0;
+    
+    /**
+     * 上一次全量加载时的版本号，不大于此版本号的墓碑记录将在下一次全量加载时清理
+     */
+    private long tombstonePurgeVersion = -1;
+    
+    /**
+     * 最近一次加载的时间，已处理的变更日志编号及最近一次清理变更日志的时间
+     */
+    private volatile long reloadedAt = 0;
+    private long lastChangeId = -1;
+    private long changeLogPurgedAt = 0;
+    
+    /**
+     * 变更日志的重新扫描起点（不含）及其后已处理过的编号；每次轮询时记录的时间及已处理到的
+     * 编号，超过重新扫描的时长后成为新的扫描起点
+     */
+    private long rescanChangeId = -1;
+    private final TreeSet<Long> rescannedChangeIds = new TreeSet<Long>();
+    private final LinkedList<long[]> changeLogCheckpoints = new LinkedList<long[]>();
+    
+    /**
+     * 本地快照文件及已保存的快照版本（均在 snapshotFileLock 锁内访问）
+     */
+    private final ConfigSnapshotFile snapshotFile;
+    private final Object snapshotFileLock = new Object();
+    private long snapshotSavedVersion = -1;
     
     private String getTableName() {
         return configTableName;
@@ -64,6 +224,42 @@ public class DBConfigBackend implements ConfigBackend {
         return "comment";
     }
     
+    /**
+     * 版本字段名，未指定时不启用增量加载
+     */
+    private String getFieldVersion() {
+        String name;
+        if (configFieldMapper != null && StringUtils.isNotBlank(name = configFieldMapper.get("version"))
+                && SqlQueryUtil.checkSQLName(name, true)) {
+            return name;
+        }
+        return null;
+    }
+    
+    private String getFieldDeleted() {
+        String name;
+        if (configFieldMapper != null && StringUtils.isNotBlank(name = configFieldMapper.get("deleted"))
+                && SqlQueryUtil.checkSQLName(name, true)) {
+            return name;
+        }
+        return "deleted";
+    }
+    
+    private String getVersionTableName() {
+        return versionTableName;
+    }
+    
+    private boolean isIncremental() {
+        return getFieldVersion() != null;
+    }
+    
+    /**
+     * 变更日志表名，未指定时不记录变更日志
+     */
+    private String getChangeLogTableName() {
+        return changeLogTableName;
+    }
+    
     public DBConfigBackend(AbstractDao baseDao) throws Exception {
         this(baseDao, null, null, null);
     }
@@ -79,10 +275,27 @@ public class DBConfigBackend implements ConfigBackend {
     
     public DBConfigBackend(@NonNull AbstractDao baseDao, Map<String, String> configs, long initDelaySec,
             long reloadDelaySec, String configTableName, Map<String, String> configFieldMapper) throws Exception {
+        this(baseDao, configs, initDelaySec, reloadDelaySec, configTableName, configFieldMapper, null);
+    }
+    
+    public DBConfigBackend(@NonNull AbstractDao baseDao, Map<String, String> configs, long initDelaySec,
+            long reloadDelaySec, String configTableName, Map<String, String> configFieldMapper, Options options)
+            throws Exception {
         this.baseDao = baseDao;
         this.configFieldMapper = configFieldMapper;
         this.configTableName = StringUtils.isBlank(configTableName) ? "system_configs" : configTableName;
         SqlQueryUtil.checkSQLName(this.configTableName);
+        if (options == null) {
+            options = new Options();
+        }
+        this.versionTableName = StringUtils.isBlank(options.getVersionTable())
+                ? String.format("%s_version", this.configTableName) : options.getVersionTable().trim();
+        SqlQueryUtil.checkSQLName(this.versionTableName);
+        if ((this.changeLogTableName = StringUtils.trimToNull(options.getChangeLogTable())) != null) {
+            SqlQueryUtil.checkSQLName(this.changeLogTableName);
+        }
+        this.snapshotFile = StringUtils.isBlank(options.getSnapshotFile()) ? null
+                : new ConfigSnapshotFile(Paths.get(options.getSnapshotFile().trim()), this.configTableName);
         if (configs != null) {
             for (Entry<String, String> c : configs.entrySet()) {
                 if (c.getValue() == null || c.getKey() == null) {
@@ -91,75 +304,433 @@ public class DBConfigBackend implements ConfigBackend {
                 initConfigs.put(c.getKey(), new ConfigItem().setName(c.getKey()).setValue(c.getValue()));
             }
         }
-        reload();
+        Map<String, ConfigItem> saved;
+        if (snapshotFile != null && (saved = snapshotFile.load(options.getSnapshotMaxAgeSec() * 1000L)) != null) {
+            /* 先行使用本地快照，并在后台与数据库同步 */
+            loadedConfigs.set(new Snapshot(1, saved));
+            scheduledService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reload();
+                    } catch (Exception e) {
+                        log.error("Failed to load configs.", e);
+                    }
+                }
+            });
+        } else {
+            reload();
+        }
         initDelaySec = CommonUtil.parseMaximalLong(initDelaySec, 0);
         reloadDelaySec = CommonUtil.parseMaximalLong(reloadDelaySec, 3);
         scheduledService.scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
                 try {
+                    if (getChangeLogTableName() != null
+                            && System.currentTimeMillis() - reloadedAt < CHANGE_LOG_RELOAD_INTERVAL_MS) {
+                        return;
+                    }
                     reload();
                 } catch (Exception e) {
                     log.error("Failed to load configs.", e);
                 }
             }
         }, initDelaySec, reloadDelaySec, TimeUnit.SECONDS);
+        if (getChangeLogTableName() != null) {
+            scheduledService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        pollChangeLog();
+                    } catch (Exception e) {
+                        log.error("Failed to poll config change log.", e);
+                    }
+                }
+            }, CHANGE_LOG_POLL_MS, CHANGE_LOG_POLL_MS, TimeUnit.MILLISECONDS);
+        }
     }
     
     @Override
     synchronized public void reload() throws Exception {
-        /* 遍历并获取所有配置信息 */
-        Set<String> names = new HashSet<String>();
-        List<Map<String, Object>> queries = baseDao.queryAsList(
-                String.format("SELECT %s, %s, %s FROM %s", getFieldName(), 
-                        getFieldValue(), getFieldComment(), getTableName()),
+        if (getChangeLogTableName() != null && lastChangeId < 0) {
+            /* 先记录变更日志的位置，加载期间的变更将在下次轮询时获取 */
+            rescanChangeId = lastChangeId = queryMaxChangeId();
+        }
+        if (!isIncremental() || loadedVersion < 0
+                || System.currentTimeMillis() - fullReloadedAt >= FULL_RELOAD_INTERVAL_MS) {
+            reloadAll();
+        } else {
+            reloadChanged();
+        }
+        reloadedAt = System.currentTimeMillis();
+        
+        /* 如果初始化的配置参数不存在，则添加到数据库中 */
+        Map<String, ConfigItem> loaded = loadedConfigs.get().getConfigs();
+        List<ConfigItem> missing = new ArrayList<ConfigItem>();
+        for (Entry<String, ConfigItem> init : initConfigs.entrySet()) {
+            if (!loaded.containsKey(init.getKey())) {
+                missing.add(init.getValue());
+            }
+        }
+        setConfigs(missing);
+        saveSnapshotFile();
+    }
+    
+    /**
+     * 配置有变化时保存本地快照，保存失败不影响配置的加载。加载及本地修改配置后均会调用，
+     * 在锁内读取最新发布的快照，避免并发保存时较旧的快照覆盖较新的快照
+     */
+    private void saveSnapshotFile() {
+        if (snapshotFile == null) {
+            return;
+        }
+        synchronized (snapshotFileLock) {
+            Snapshot current;
+            if ((current = loadedConfigs.get()).getVersion() == snapshotSavedVersion) {
+                return;
+            }
+            try {
+                snapshotFile.save(current.getConfigs());
+                snapshotSavedVersion = current.getVersion();
+            } catch (Exception e) {
+                log.warn("Failed to save config snapshot : {}", e.toString());
+            }
+        }
+    }
+    
+    /**
+     * 全量加载所有配置信息
+     */
+    private void reloadAll() throws Exception {
+        /* 先读取版本计数，加载期间的变更将在下次增量加载时获取 */
+        long version = isIncremental() ? queryVersion() : -1;
+        final List<Map<String, Object>> queries = baseDao.queryAsList(
+                String.format("SELECT %s, %s, %s FROM %s%s", getFieldName(), 
+                        getFieldValue(), getFieldComment(), getTableName(),
+                        isIncremental() ? String.format(" WHERE %s = 0", getFieldDeleted()) : ""),
                 null);
-        for (Map<String, Object> item : queries) {
-            String name;
-            if ((name = (String) item.get(getFieldName())) == null) {
-                continue;
+        publish(new SnapshotUpdater() {
+            @Override
+            public boolean update(Map<String, ConfigItem> configs) {
+                Map<String, ConfigItem> previous = new HashMap<String, ConfigItem>(configs);
+                configs.clear();
+                boolean changed = false;
+                for (Map<String, Object> item : queries) {
+                    String name;
+                    ConfigItem origin;
+                    if ((name = (String) item.get(getFieldName())) == null) {
+                        continue;
+                    }
+                    if ((origin = previous.get(name)) != null) {
+                        configs.put(name, origin);
+                    }
+                    changed |= applyLoaded(configs, name, (String) item.get(getFieldValue()),
+                            (String) item.get(getFieldComment()));
+                }
+                for (String name : previous.keySet()) {
+                    if (!configs.containsKey(name)) {
+                        changed = true;
+                        log.info("Config {} has been removed", name);
+                    }
+                }
+                return changed;
             }
-            names.add(name);
-            String value = (String) item.get(getFieldValue());
-            String comment = (String) item.get(getFieldComment());
-            if (!loadedConfigs.containsKey(name)) {
-                log.info("Config {} has been added", name);
-            } else if (!StringUtils.equals(loadedConfigs.get(name).getValue(), value)) {
-                log.info("Config {} has been updated", name);
+        });
+        loadedVersion = version;
+        fullReloadedAt = System.currentTimeMillis();
+        purgeTombstones(version);
+    }
+    
+    /**
+     * 清理上一次全量加载时已存在的墓碑记录，并记录本次的版本号供下一次清理，清理失败不影响配置的加载
+     */
+    private void purgeTombstones(long version) {
+        if (!isIncremental()) {
+            return;
+        }
+        if (tombstonePurgeVersion >= 0) {
+            try {
+                baseDao.executeUpdate(String.format("DELETE FROM %s WHERE %s = 1 AND %s <= ?", getTableName(),
+                        getFieldDeleted(), getFieldVersion()), new Object[] { tombstonePurgeVersion });
+            } catch (Exception e) {
+                log.warn("Failed to purge config tombstones : {}", e.toString());
             }
-            ConfigItem config = new ConfigItem();
-            config.setName(name);
-            config.setValue(value);
-            config.setComment(comment);
-            loadedConfigs.put(name, config);
         }
-        for (String name : loadedConfigs.keySet()) {
-            if (!names.contains(name)) {
-                loadedConfigs.remove(name);
-                log.info("Config {} has been removed", name);
+        tombstonePurgeVersion = version;
+    }
+    
+    /**
+     * 增量加载：版本计数无变化时不查询配置表，否则仅加载版本号更大的配置（含墓碑）
+     */
+    private void reloadChanged() throws Exception {
+        long version;
+        if ((version = queryVersion()) == loadedVersion) {
+            return;
+        }
+        if (version < loadedVersion) {
+            log.warn("Config version decreased ({} => {}), reload all.", loadedVersion, version);
+            reloadAll();
+            return;
+        }
+        final List<Map<String, Object>> queries = baseDao.queryAsList(
+                String.format("SELECT %s, %s, %s, %s FROM %s WHERE %s > ?", getFieldName(), getFieldValue(),
+                        getFieldComment(), getFieldDeleted(), getTableName(), getFieldVersion()),
+                new Object[] { loadedVersion });
+        publish(new SnapshotUpdater() {
+            @Override
+            public boolean update(Map<String, ConfigItem> configs) {
+                boolean changed = false;
+                for (Map<String, Object> item : queries) {
+                    String name;
+                    if ((name = (String) item.get(getFieldName())) == null) {
+                        continue;
+                    }
+                    if (isDeleted(item.get(getFieldDeleted()))) {
+                        if (configs.remove(name) != null) {
+                            changed = true;
+                            log.info("Config {} has been removed", name);
+                        }
+                        continue;
+                    }
+                    changed |= applyLoaded(configs, name, (String) item.get(getFieldValue()),
+                            (String) item.get(getFieldComment()));
+                }
+                return changed;
             }
+        });
+        loadedVersion = version;
+    }
+    
+    /**
+     * 将加载的配置写入快照副本，配置未变化时保留原有的配置项
+     * 
+     * @return 配置是否有变化
+     */
+    private static boolean applyLoaded(Map<String, ConfigItem> configs, String name, String value, String comment) {
+        ConfigItem loaded;
+        if ((loaded = configs.get(name)) == null) {
+            log.info("Config {} has been added", name);
+        } else if (!StringUtils.equals(loaded.getValue(), value)) {
+            log.info("Config {} has been updated", name);
+        } else if (StringUtils.equals(loaded.getComment(), comment)) {
+            return false;
         }
-        
-        /* 如果初始化的配置参数不存在，则添加到数据库中 */
-        for (String key : initConfigs.keySet()) {
-            if (!loadedConfigs.containsKey(key)) {
-                setConfig(initConfigs.get(key));
+        configs.put(name, new ConfigItem().setName(name).setValue(value).setComment(comment));
+        return true;
+    }
+    
+    /**
+     * 在当前快照的副本上执行变更，并以原子替换的方式发布新快照。发布时若快照已被其他
+     * 线程替换，则基于最新快照重新执行变更。
+     */
+    private void publish(SnapshotUpdater updater) {
+        Snapshot current;
+        Map<String, ConfigItem> configs;
+        do {
+            current = loadedConfigs.get();
+            configs = new HashMap<String, ConfigItem>(current.getConfigs());
+            if (!updater.update(configs)) {
+                return;
             }
+        } while (!loadedConfigs.compareAndSet(current,
+                new Snapshot(current.getVersion() + 1, Collections.unmodifiableMap(configs))));
+    }
+    
+    private long queryMaxChangeId() throws Exception {
+        List<Map<String, Object>> result = baseDao.queryAsList(
+                String.format("SELECT MAX(id) AS id FROM %s", getChangeLogTableName()), null);
+        if (result == null || result.isEmpty()) {
+            return 0;
+        }
+        return CommonUtil.parseLong(result.get(0).get("id"), 0);
+    }
+    
+    /**
+     * 在修改配置的事务中记录变更日志
+     */
+    private void writeChangeLog(String... names) throws Exception {
+        String changeLogTable;
+        if ((changeLogTable = getChangeLogTableName()) == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int from = 0; from < names.length; from += UPSERT_BATCH_SIZE) {
+            int to = Math.min(from + UPSERT_BATCH_SIZE, names.length);
+            Object[] args = new Object[(to - from) * 2];
+            for (int i = from; i < to; i++) {
+                args[(i - from) * 2] = names[i];
+                args[(i - from) * 2 + 1] = now;
+            }
+            baseDao.executeUpdate(String.format("INSERT INTO %s (name, created_at) VALUES %s", changeLogTable,
+                    StringUtils.join("(?,?)", to - from, ",")), args);
+        }
+    }
+    
+    /**
+     * 轮询变更日志，仅重新加载发生变更的配置。从重新扫描的起点开始查询并跳过已处理过的编号，
+     * 以获取编号较小但提交较晚的变更（reloadNames 是幂等的，重复加载不影响结果）
+     */
+    synchronized void pollChangeLog() throws Exception {
+        if (lastChangeId < 0) {
+            /* 尚未完成首次加载 */
+            return;
+        }
+        long[] checkpoint;
+        long now = System.currentTimeMillis();
+        while ((checkpoint = changeLogCheckpoints.peekFirst()) != null
+                && now - checkpoint[0] >= CHANGE_LOG_RESCAN_MS) {
+            rescanChangeId = checkpoint[1];
+            changeLogCheckpoints.removeFirst();
+        }
+        rescannedChangeIds.headSet(rescanChangeId, true).clear();
+        String changeLogTable = getChangeLogTableName();
+        boolean changed = false;
+        long fromChangeId = rescanChangeId;
+        List<Map<String, Object>> changes;
+        do {
+            changes = baseDao.queryAsList(
+                    String.format("SELECT id, name FROM %s WHERE id > ? ORDER BY id LIMIT %s", changeLogTable,
+                            CHANGE_LOG_BATCH_SIZE),
+                    new Object[] { fromChangeId });
+            if (changes == null || changes.isEmpty()) {
+                break;
+            }
+            Set<Long> changeIds = new HashSet<Long>();
+            Set<String> names = new LinkedHashSet<String>();
+            for (Map<String, Object> change : changes) {
+                long changeId;
+                if ((changeId = CommonUtil.parseLong(change.get("id"), -1L)) < 0) {
+                    continue;
+                }
+                fromChangeId = Math.max(fromChangeId, changeId);
+                if (rescannedChangeIds.contains(changeId)) {
+                    continue;
+                }
+                String name;
+                if ((name = (String) change.get("name")) != null) {
+                    names.add(name);
+                }
+                changeIds.add(changeId);
+            }
+            if (!names.isEmpty()) {
+                reloadNames(names);
+            }
+            if (!changeIds.isEmpty()) {
+                rescannedChangeIds.addAll(changeIds);
+                changed = true;
+            }
+            lastChangeId = Math.max(lastChangeId, fromChangeId);
+        } while (changes.size() >= CHANGE_LOG_BATCH_SIZE);
+        changeLogCheckpoints.addLast(new long[] { now, lastChangeId });
+        if (changed) {
+            saveSnapshotFile();
+        }
+        if (System.currentTimeMillis() - changeLogPurgedAt >= FULL_RELOAD_INTERVAL_MS) {
+            changeLogPurgedAt = System.currentTimeMillis();
+            baseDao.executeUpdate(String.format("DELETE FROM %s WHERE created_at < ?", changeLogTable),
+                    new Object[] { changeLogPurgedAt - CHANGE_LOG_RETENTION_MS });
+        }
+    }
+    
+    /**
+     * 重新加载指定的配置，不存在（或已标记删除）的配置将被移除
+     */
+    private void reloadNames(final Set<String> names) throws Exception {
+        List<Map<String, Object>> queries = baseDao.queryAsList(
+                String.format("SELECT %s, %s, %s%s FROM %s WHERE %s IN (%s)", getFieldName(), getFieldValue(),
+                        getFieldComment(), isIncremental() ? String.format(", %s", getFieldDeleted()) : "",
+                        getTableName(), getFieldName(), StringUtils.join("?", names.size(), ",")),
+                names.toArray());
+        final Map<String, Map<String, Object>> loaded = new HashMap<String, Map<String, Object>>();
+        for (Map<String, Object> item : queries) {
+            String name;
+            if ((name = (String) item.get(getFieldName())) != null) {
+                loaded.put(name, item);
+            }
+        }
+        publish(new SnapshotUpdater() {
+            @Override
+            public boolean update(Map<String, ConfigItem> configs) {
+                boolean changed = false;
+                for (String name : names) {
+                    Map<String, Object> item;
+                    if ((item = loaded.get(name)) == null
+                            || (isIncremental() && isDeleted(item.get(getFieldDeleted())))) {
+                        if (configs.remove(name) != null) {
+                            changed = true;
+                            log.info("Config {} has been removed", name);
+                        }
+                        continue;
+                    }
+                    changed |= applyLoaded(configs, name, (String) item.get(getFieldValue()),
+                            (String) item.get(getFieldComment()));
+                }
+                return changed;
+            }
+        });
+    }
+    
+    /**
+     * 获取已加载配置的当前快照（不含未写入数据库的初始化配置）
+     */
+    public Snapshot getSnapshot() {
+        return loadedConfigs.get();
+    }
+    
+    /**
+     * 尚未写入数据库的初始化配置，与快照合并后即为 getConfigKeys 所列的配置（快照优先）
+     */
+    Map<String, ConfigItem> getInitConfigs() {
+        return Collections.unmodifiableMap(initConfigs);
+    }
+    
+    /**
+     * 已加载配置快照的版本号，配置每次变化时增加
+     */
+    public long getSnapshotVersion() {
+        return loadedConfigs.get().getVersion();
+    }
+    
+    private static boolean isDeleted(Object flag) {
+        if (flag instanceof Boolean) {
+            return (Boolean) flag;
+        }
+        return CommonUtil.parseInteger(flag, 0) != 0;
+    }
+    
+    private long queryVersion() throws Exception {
+        List<Map<String, Object>> result = baseDao.queryAsList(
+                String.format("SELECT version FROM %s", getVersionTableName()), null);
+        if (result == null || result.isEmpty()) {
+            return 0;
         }
+        return CommonUtil.parseLong(result.get(0).get("version"), 0);
+    }
+    
+    /**
+     * 递增版本计数并返回新的版本号（须在事务中调用，版本计数行锁保证各节点的修改按版本号顺序提交）
+     */
+    private long nextVersion() throws Exception {
+        if (baseDao.executeUpdate(String.format("UPDATE %s SET version = version + 1", getVersionTableName()),
+                null) <= 0) {
+            throw new MessageException(String.format("配置版本计数表(%s)未初始化", getVersionTableName()));
+        }
+        return queryVersion();
     }
     
     @Override
     public List<String> getConfigKeys() {
         List<String> keys = new ArrayList<String>();
         keys.addAll(initConfigs.keySet());
-        keys.addAll(loadedConfigs.keySet());
+        keys.addAll(loadedConfigs.get().getConfigs().keySet());
         return keys;
     }
     
     @Override
     public ConfigItem getConfig(String name) {
         ConfigItem config;
-        if ((config = loadedConfigs.get(name)) == null) {
+        if ((config = loadedConfigs.get().getConfigs().get(name)) == null) {
             config = initConfigs.get(name);
         }
         return config;
@@ -168,19 +739,142 @@ public class DBConfigBackend implements ConfigBackend {
     @Override
     public ConfigItem setConfig(final ConfigItem c) throws Exception {
         ConfigItem origin = getConfig(c.getName());
-        if (c.getValue() == null) {
-            baseDao.executeUpdate(
-                    SqlQueryUtil.prepareDeleteQuery(getTableName(), new ObjectMap().put(getFieldName(), c.getName())));
-        } else {
-            baseDao.executeUpdate(SqlQueryUtil.prepareInsertQuery(getTableName(),
-                    new ObjectMap().put(String.format("=%s", getFieldName()), c.getName())
-                            .put(String.format("=%s", getFieldValue()), c.getValue())
-                            .put(String.format("=%s", getFieldComment()), c.getComment())));
-        }
-        loadedConfigs.put(c.getName(), c);
+        baseDao.executeTransaction(new ResultSetProcessor() {
+            @Override
+            public void process(ResultSet result, Connection conn) throws Exception {
+                if (isIncremental()) {
+                    long version = nextVersion();
+                    ObjectMap values = new ObjectMap()
+                            .put(String.format("=%s", getFieldName()), c.getName())
+                            .put(String.format("=%s", getFieldVersion()), version)
+                            .put(String.format("=%s", getFieldDeleted()), c.getValue() == null ? 1 : 0);
+                    if (c.getValue() != null) {
+                        values.put(String.format("=%s", getFieldValue()), c.getValue())
+                              .put(String.format("=%s", getFieldComment()), c.getComment());
+                    }
+                    baseDao.executeUpdate(SqlQueryUtil.prepareInsertQuery(getTableName(), values));
+                } else if (c.getValue() == null) {
+                    baseDao.executeUpdate(SqlQueryUtil.prepareDeleteQuery(getTableName(),
+                            new ObjectMap().put(getFieldName(), c.getName())));
+                } else {
+                    baseDao.executeUpdate(SqlQueryUtil.prepareInsertQuery(getTableName(),
+                            new ObjectMap().put(String.format("=%s", getFieldName()), c.getName())
+                                    .put(String.format("=%s", getFieldValue()), c.getValue())
+                                    .put(String.format("=%s", getFieldComment()), c.getComment())));
+                }
+                writeChangeLog(c.getName());
+            }
+        });
+        /* 保存副本，避免调用方修改已发布的快照 */
+        final ConfigItem saved = new ConfigItem().setName(c.getName()).setValue(c.getValue())
+                .setComment(c.getComment());
+        publish(new SnapshotUpdater() {
+            @Override
+            public boolean update(Map<String, ConfigItem> configs) {
+                configs.put(saved.getName(), saved);
+                return true;
+            }
+        });
+        saveSnapshotFile();
         return origin;
     }
     
+    /**
+     * 批量设置配置：在一个事务中以多行 INSERT ... ON DUPLICATE KEY UPDATE 语句写入（每条语句
+     * 至多 500 行），值为 null 的配置将被删除。
+     */
+    @Override
+    public void setConfigs(Collection<ConfigItem> configs) throws Exception {
+        if (configs == null || configs.isEmpty()) {
+            return;
+        }
+        /* 同名的配置以最后一个为准；reload 补充初始化配置时不经过 ConfigService 的校验，须在此检查名称 */
+        final Map<String, ConfigItem> saved = new LinkedHashMap<String, ConfigItem>();
+        for (ConfigItem c : configs) {
+            if (c == null || c.getName() == null) {
+                throw new InvalidConfigKeyException("key = null");
+            }
+            saved.put(c.getName(), new ConfigItem().setName(c.getName()).setValue(c.getValue())
+                    .setComment(c.getComment()));
+        }
+        final List<ConfigItem> upserts = new ArrayList<ConfigItem>();
+        final List<String> deletes = new ArrayList<String>();
+        for (ConfigItem c : saved.values()) {
+            if (c.getValue() == null) {
+                deletes.add(c.getName());
+            } else {
+                upserts.add(c);
+            }
+        }
+        baseDao.executeTransaction(new ResultSetProcessor() {
+            @Override
+            public void process(ResultSet result, Connection conn) throws Exception {
+                long version = isIncremental() ? nextVersion() : -1;
+                for (int from = 0; from < upserts.size(); from += UPSERT_BATCH_SIZE) {
+                    upsertRows(upserts.subList(from, Math.min(from + UPSERT_BATCH_SIZE, upserts.size())), version);
+                }
+                if (!deletes.isEmpty()) {
+                    deleteRows(deletes.toArray(new String[deletes.size()]), version);
+                }
+                writeChangeLog(saved.keySet().toArray(new String[saved.size()]));
+            }
+        });
+        publish(new SnapshotUpdater() {
+            @Override
+            public boolean update(Map<String, ConfigItem> configs) {
+                configs.putAll(saved);
+                return true;
+            }
+        });
+        saveSnapshotFile();
+    }
+    
+    private void upsertRows(List<ConfigItem> rows, long version) throws Exception {
+        List<String> fields = new ArrayList<String>();
+        fields.add(getFieldName());
+        fields.add(getFieldValue());
+        fields.add(getFieldComment());
+        if (version >= 0) {
+            fields.add(getFieldVersion());
+            fields.add(getFieldDeleted());
+        }
+        List<String> updates = new ArrayList<String>();
+        for (String field : fields.subList(1, fields.size())) {
+            updates.add(String.format("%s = VALUES(%s)", field, field));
+        }
+        String placeholders = String.format("(%s)", StringUtils.join("?", fields.size(), ","));
+        List<Object> args = new ArrayList<Object>(rows.size() * fields.size());
+        for (ConfigItem c : rows) {
+            args.add(c.getName());
+            args.add(c.getValue());
+            args.add(c.getComment());
+            if (version >= 0) {
+                args.add(version);
+                args.add(0);
+            }
+        }
+        baseDao.executeUpdate(String.format("INSERT INTO %s (%s) VALUES %s ON DUPLICATE KEY UPDATE %s",
+                getTableName(), StringUtils.join(fields, ", "), StringUtils.join(placeholders, rows.size(), ","),
+                StringUtils.join(updates, ", ")), args.toArray());
+    }
+    
+    /**
+     * 删除配置，增量加载模式下仅设置删除标记（墓碑）
+     */
+    private void deleteRows(String[] names, long version) throws Exception {
+        if (version >= 0) {
+            Object[] args = new Object[names.length + 1];
+            args[0] = version;
+            System.arraycopy(names, 0, args, 1, names.length);
+            baseDao.executeUpdate(String.format("UPDATE %s SET %s = 1, %s = ? WHERE %s IN (%s)",
+                    getTableName(), getFieldDeleted(), getFieldVersion(), getFieldName(),
+                    StringUtils.join("?", names.length, ",")), args);
+            return;
+        }
+        baseDao.executeUpdate(String.format("DELETE FROM %s WHERE %s IN (%s)", getTableName(),
+                getFieldName(), StringUtils.join("?", names.length, ",")), names);
+    }
+    
     @Override
     public void deleteConfigs(final String... names) throws Exception {
         if (names == null || names.length <= 0) {
@@ -189,9 +883,20 @@ public class DBConfigBackend implements ConfigBackend {
         baseDao.executeTransaction(new ResultSetProcessor() {
             @Override
             public void process(ResultSet result, Connection conn) throws Exception {
-                baseDao.executeUpdate(String.format("DELETE FROM %s WHERE %s IN (%s)", getTableName(), getFieldName(),
-                        StringUtils.join("?", names.length, ",")), names);
+                deleteRows(names, isIncremental() ? nextVersion() : -1);
+                writeChangeLog(names);
+            }
+        });
+        publish(new SnapshotUpdater() {
+            @Override
+            public boolean update(Map<String, ConfigItem> configs) {
+                boolean changed = false;
+                for (String name : names) {
+                    changed |= configs.remove(name) != null;
+                }
+                return changed;
             }
         });
+        saveSnapshotFile();
     }
 }
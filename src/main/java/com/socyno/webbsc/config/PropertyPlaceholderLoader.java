@@ -2,8 +2,11 @@ package com.socyno.webbsc.config;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import lombok.Setter;
 
@@ -54,19 +57,22 @@ public class PropertyPlaceholderLoader extends PreferencesPlaceholderConfigurer
     
     protected Properties LoadProperties(Properties properties) throws IOException {
         if (configService != null) {
-            List<String> names = configService.getConfigKeys();
-            for (String name : names) {
-                properties.setProperty(name, configService.getValue(name));
-            }
+            Set<String> names = new HashSet<String>(configService.getConfigKeys());
+            List<ConfigItem> missing = new ArrayList<ConfigItem>();
             for (String prop : properties.stringPropertyNames()) {
                 if (names.contains(prop)) {
                     continue;
                 }
-                try {
-                    configService.setConfig(prop, properties.getProperty(prop));
-                } catch (Exception e) {
-                    throw new IOException(e);
-                }
+                missing.add(new ConfigItem().setName(prop).setValue(properties.getProperty(prop)));
+            }
+            for (String name : names) {
+                properties.setProperty(name, configService.getValue(name));
+            }
+            /* 数据库中不存在的配置，一次性批量写入 */
+            try {
+                configService.setConfigs(missing);
+            } catch (Exception e) {
+                throw new IOException(e);
             }
         }
         FileOutputStream oFile = new FileOutputStream(String.format("%s%s%s", System.getProperty("java.io.tmpdir"),
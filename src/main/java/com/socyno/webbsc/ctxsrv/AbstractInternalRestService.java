@@ -1,31 +1,93 @@
 package com.socyno.webbsc.ctxsrv;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.pool.PoolStats;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.socyno.base.bscexec.MessageException;
 import com.socyno.base.bscmixutil.CommonUtil;
 import com.socyno.base.bscmixutil.JsonUtil;
 import com.socyno.base.bscmixutil.StringUtils;
 import com.socyno.base.bscmodel.R;
+import com.socyno.base.bscmodel.SessionContext;
+import com.socyno.base.bscmodel.UserContext;
 import com.socyno.base.bscservice.HttpUtil;
 import com.socyno.webbsc.ctxutil.ContextHttpClient;
+import com.socyno.webbsc.ctxutil.ContextHttpPoolConfig;
 import com.socyno.webbsc.ctxutil.HttpMessageConverter;
+import com.socyno.webbsc.ctxutil.RequestDeadline;
+import com.socyno.webbsc.ctxutil.StreamingFormEntity;
+import com.socyno.webbsc.ctxutil.StreamingJsonEntity;
+import com.socyno.webbsc.ctxutil.StreamingMultipartEntity;
+import com.socyno.webbsc.exception.InternalRestCircuitOpenException;
+import com.socyno.webbsc.exception.InternalRestDeadlineExceededException;
 @Slf4j
 @Getter
 @Setter
@@ -55,7 +117,7 @@ public class AbstractInternalRestService {
             }
             return this;
         }
-
+        
         public QueryMapData remove(String key) {
             data.remove(key);
             return this;
@@ -66,16 +128,226 @@ public class AbstractInternalRestService {
         }
     }
     
+    /**
+     * 批量请求中的单项请求
+     */
+    @Getter
+    public static class BatchRequest {
+        private final Method method;
+        private final String path;
+        private final Map<String, Object> query;
+        private final Object data;
+        private final Map<String, Object> headers;
+        
+        /**
+         * @param method  请求方式（默认 GET）
+         * @param path    请求地址（相对URL）
+         * @param query   请求URL参数
+         * @param data    请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+         * @param headers 请求头
+         */
+        public BatchRequest(Method method, String path, Map<String, Object> query, Object data,
+                Map<String, Object> headers) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.data = data;
+            this.headers = headers;
+        }
+        
+        public static BatchRequest get(String path, Map<String, Object> query) {
+            return new BatchRequest(Method.GET, path, query, null, null);
+        }
+        
+        public static BatchRequest post(String path, Object data) {
+            return new BatchRequest(Method.POST, path, null, data, null);
+        }
+    }
+    
+    /**
+     * 批量请求中的单项结果，请求失败时 error 不为空
+     */
+    @Getter
+    public static class BatchResult<T> {
+        private final T data;
+        private final Throwable error;
+        
+        private BatchResult(T data, Throwable error) {
+            this.data = data;
+            this.error = error;
+        }
+        
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+    
     private int timeoutMS;
     private String charset;
     private String dateformat = "yyyy-MM-dd HH:mm:ss";
     private final String url;
-
+    
+    /**
+     * 多个服务实例时的负载均衡器（单个实例时为空），url 为首个实例的根路径，用作服务的标识
+     * （熔断、指标及缓存均按服务统计）
+     */
+    private final InternalRestBalancer balancer;
+    
+    /**
+     * 异步请求线程池的线程数及等待队列长度（仅在线程池创建前设置有效）
+     */
+    private int asyncPoolSize = 8;
+    private int asyncQueueSize = 200;
+    
+    /**
+     * 异步请求线程池，未设置时按 asyncPoolSize 及 asyncQueueSize 创建
+     */
+    private volatile ExecutorService asyncExecutor;
+    
+    /**
+     * GET 请求的响应缓存，为空时不缓存（默认）
+     */
+    private volatile InternalRestResponseCache responseCache;
+    
+    /**
+     * 是否合并相同的并发 GET 请求（相同的地址、参数及请求头），默认不合并。
+     * 合并后的请求结果在调用方之间共享，调用方不可修改其内容。
+     */
+    private volatile boolean coalescingGets = false;
+    
+    /**
+     * 是否启用熔断（按服务根路径统计，默认不启用）。启用后，失败比例过高时本服务的请求将直接
+     * 失败（InternalRestCircuitOpenException），而不再等待超时。
+     */
+    private volatile boolean circuitBreakerEnabled = false;
+    
+    /**
+     * 是否根据近期请求耗时自动缩短超时时间（以 timeoutMS 为上限，默认不启用）。
+     * 耗时由熔断器统计，因此仅在启用熔断时有效。
+     */
+    private volatile boolean adaptiveTimeoutEnabled = false;
+    
+    /**
+     * 幂等请求（GET 及 idempotentPaths 中的请求）的重试策略，为空时不重试（默认）
+     */
+    private volatile InternalRestRetryPolicy retryPolicy;
+    
+    /**
+     * 可安全重试的非 GET 请求路径（以 / 开头的相对路径，如查询类的 POST 接口）
+     */
+    private volatile Set<String> idempotentPaths;
+    
+    /**
+     * 请求指标的接收器，默认记录到 InternalRestMetrics.getDefault() 中，为空时不记录
+     */
+    private volatile InternalRestMetricsSink metricsSink = InternalRestMetrics.getDefault();
+    
+    /**
+     * 是否接受 gzip 压缩的响应（默认接受，响应将以流的方式解压）
+     */
+    private volatile boolean responseCompressionEnabled = true;
+    
+    /**
+     * 请求体达到此字节数时以 gzip 方式压缩（需服务端支持），小于等于 0 时不压缩（默认）
+     */
+    private volatile int requestCompressionThreshold = 0;
+    
+    /**
+     * 是否以流的方式发送请求体（默认不启用）：JSON 数据通过 getGson() 直接序列化到连接的输出流中
+     * （此时日期按 dateformat 格式输出），form-urlencoded 数据逐个编码输出，均以 chunked 方式传输，
+     * 避免生成完整的请求文本及其字节数组。启用后如 requestCompressionThreshold 大于 0，请求体总是
+     * 压缩发送（无法预知其长度）。
+     */
+    private volatile boolean streamingRequestBody = false;
+    
+    /**
+     * 分页列表请求的页码及页大小参数名、首页页码，以及遍历时是否异步预取下一页（默认预取）
+     */
+    private String pageParameter = "page";
+    private String pageSizeParameter = "limit";
+    private int firstPage = 1;
+    private boolean pagePrefetch = true;
+    
+    /**
+     * 独立连接池的配置项前缀（参见 ContextHttpPoolConfig.fromConfig），为空时使用共享的
+     * ContextHttpClient.getDefault()（默认）。仅在首次请求前设置有效。
+     */
+    private String connectionPoolConfigPrefix;
+    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile ContextHttpClient dedicatedHttpClient;
+    
+    /**
+     * 并发隔离：限制本服务同时执行的请求数（含等待队列），为空时不限制（默认）。
+     * 可通过 InternalRestBulkhead.fromConfig 创建，以便在运行时通过系统配置调整限制。
+     */
+    private volatile InternalRestBulkhead bulkhead;
+    
+    /**
+     * 最近请求的耗时，用于计算对冲请求的等待时间
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final InternalRestLatencyWindow latencyWindow = new InternalRestLatencyWindow(100, 20);
+    
+    /**
+     * 正在执行中的 GET 请求
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CompletableFuture<Object>> inflightGets
+                    = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+    
+    /**
+     * 各服务类是否可流式解析响应数据的检测结果
+     */
+    private final static Map<Class<?>, Boolean> STREAMING_DECODABLE = new ConcurrentHashMap<Class<?>, Boolean>();
+    
     private final static int HTTP_TIMEOUT_DEFAULT = 20000;
     private final static String HTTP_CHARSET_DEFAULT = "UTF-8";
     
+    /**
+     * 按日期格式缓存的 Gson 实例（Gson 线程安全，可复用）
+     */
+    private final static Map<String, Gson> GSON_REGISTRY = new ConcurrentHashMap<String, Gson>();
+    
+    /**
+     * 对冲请求的定时器（仅用于在等待时间到达后将对冲请求提交到异步线程池）
+     */
+    private static ScheduledExecutorService hedgingScheduler = null;
+    
+    /**
+     * 分页列表请求的页面数据类型，页面中的条目在遍历时才转换为目标类型
+     */
+    private final static Type PAGE_ITEMS_TYPE = new TypeToken<List<JsonElement>>() {}.getType();
+    
     protected HttpUtil getHttpClient() {
-    	return ContextHttpClient.getDefault();
+        ContextHttpClient client;
+        if (StringUtils.isBlank(connectionPoolConfigPrefix)) {
+            return ContextHttpClient.getDefault();
+        }
+        if ((client = dedicatedHttpClient) == null) {
+            synchronized (this) {
+                if ((client = dedicatedHttpClient) == null) {
+                    ContextHttpPoolConfig config = ContextHttpPoolConfig.fromConfig(connectionPoolConfigPrefix);
+                    log.info("Create dedicated connection pool for {} : {}", url, config);
+                    client = dedicatedHttpClient = new ContextHttpClient(config);
+                }
+            }
+        }
+        return client;
+    }
+    
+    /**
+     * 获取请求所使用连接池的当前状态（已租用、等待中、空闲及上限的连接数），未使用连接池时返回空。
+     * 获取连接的次数、等待时间及超时次数可通过 ContextHttpClient 的统计方法查看。
+     */
+    public PoolStats getConnectionPoolStats() {
+        HttpUtil client;
+        if ((client = getHttpClient()) instanceof ContextHttpClient) {
+            return ((ContextHttpClient) client).getPoolStats();
+        }
+        return null;
     }
     
     /**
@@ -120,8 +392,44 @@ public class AbstractInternalRestService {
      */
     public AbstractInternalRestService(String url, int timeoutMS, String charset)
             throws URISyntaxException  {
+        this(Collections.singletonList(url), timeoutMS, charset);
+    }
+    
+    /**
+     * 构造器（多个服务实例，请求将在实例间负载均衡）
+     * @param urls      各服务实例的请求URL根路径
+     * @throws URISyntaxException
+     */
+    public AbstractInternalRestService(List<String> urls) throws URISyntaxException {
+        this(urls, HTTP_TIMEOUT_DEFAULT, HTTP_CHARSET_DEFAULT);
+    }
+    
+    /**
+     * 构造器（多个服务实例，请求将在实例间负载均衡）
+     * @param urls      各服务实例的请求URL根路径
+     * @param timeoutMS 请求超时（默认 20s，指连接超时或请求响应超时限制）
+     * @param charset   编码方式（默认 UTF-8）
+     * @throws URISyntaxException
+     */
+    public AbstractInternalRestService(List<String> urls, int timeoutMS, String charset)
+            throws URISyntaxException  {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("No service url provided.");
+        }
         this.charset = charset;
         this.timeoutMS = timeoutMS;
+        List<String> formatted = new ArrayList<String>(urls.size());
+        for (String url : urls) {
+            formatted.add(urlFormatter(url));
+        }
+        this.url = formatted.get(0);
+        this.balancer = formatted.size() > 1 ? new InternalRestBalancer(formatted) : null;
+    }
+    
+    /**
+     * 请求URL根路径规范化：仅保留协议、主机、端口及路径（移除尾部的 /）
+     */
+    private String urlFormatter(String url) throws URISyntaxException {
         URI uri = new URI(url);
         StringBuffer burl = new StringBuffer()
                     .append(uri.getScheme())
@@ -132,7 +440,7 @@ public class AbstractInternalRestService {
             burl.append(":").append(port);
         }
         String path = pathFormatter(uri.getPath(), true);
-        this.url = burl.append(path).toString();
+        return burl.append(path).toString();
     }
     
     public String getCharset() {
@@ -177,6 +485,30 @@ public class AbstractInternalRestService {
                             .getBytes(getCharset());
     }
     
+    /**
+     * 创建流式请求体：QueryMapData 以 form-urlencoded 形式输出，其他数据以 JSON 形式输出。
+     */
+    private HttpEntity toStreamingEntity(Object data) {
+        if (data instanceof QueryMapData) {
+            return new StreamingFormEntity(((QueryMapData) data).asMap(), getCharset());
+        }
+        return new StreamingJsonEntity(data, getGson(), getCharset());
+    }
+    
+    /**
+     * 以 gzip 方式压缩请求体
+     */
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(body.length / 4, 64));
+        GZIPOutputStream output = new GZIPOutputStream(compressed);
+        try {
+            output.write(body);
+        } finally {
+            output.close();
+        }
+        return compressed.toByteArray();
+    }
+    
     /**
      * POST请求。
      * 
@@ -205,130 +537,991 @@ public class AbstractInternalRestService {
     }
     
     /**
-     * POST请求。
-     * 
-     * @param clazz       数据类型
-     * @param path        请求地址
-     * @param query       请求URL参数
-     * @return            指定数据类型的对象。注意：如果对象是集合或数组，请使用 list 方法。
-     * @throws IOException
+     * POST请求。
+     * 
+     * @param clazz       数据类型
+     * @param path        请求地址
+     * @param query       请求URL参数
+     * @return            指定数据类型的对象。注意：如果对象是集合或数组，请使用 list 方法。
+     * @throws IOException
+     */
+    public <T> T post(Class<T> clazz, String path, Map<String, Object> query)
+            throws IOException {
+        return post(clazz, path, (Object)null, query);
+    }
+    
+    /**
+     * POST 请求.
+     * 
+     * @param clazz 响应对象类型
+     * @param path  请求地址
+     * @param query 请求BODY数据（form-urlencoded形式）
+     */
+    public <T> T post(Class<T> clazz, String path, QueryMapData query)
+            throws IOException {
+        return post(clazz, path, (Object)query, (Map<String, Object>)null);
+    }
+    
+    /**
+     * POST 请求.
+     * 
+     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path 请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     * @param query 请求URL参数（Query String）
+     */
+    public <T> T post(Class<T> clazz, String path, Object data, Map<String, Object> query) throws IOException {
+        return post(clazz, path, data, query, null);
+    }
+    
+    /**
+     * POST 请求.
+     * 
+     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path 请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     * @param query 请求URL参数（Query String）
+     * @param headers 请求头
+     * @return
+     * @throws IOException
+     */
+    public <T> T post(Class<T> clazz, String path, Object data, Map<String, Object> query, Map<String, Object> headers)
+            throws IOException {
+        return post(clazz, path, data, query, headers, true);
+    }
+    
+    /**
+     * 
+     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path 请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     * @param query 请求URL参数（Query String）
+     * @param headers 请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     * @return
+     * @throws IOException
+     */
+    public <T> T post(Class<T> clazz, String path, Object data, Map<String, Object> query, Map<String, Object> headers,
+            boolean isCheckStatus) throws IOException {
+        return call(Method.POST, clazz, path, query, data, headers, isCheckStatus);
+    }
+    
+    /**
+     * POST 请求，响应的 data 部分以流的方式直接反序列化为指定的泛型类型（如 List&lt;T&gt;, Map&lt;String, T&gt;）。
+     * 
+     * @param type 响应 data 的数据类型
+     * @param path 请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     */
+    public <T> T post(@NonNull TypeToken<T> type, String path, Object data) throws IOException {
+        return post(type, path, data, null, null, true);
+    }
+    
+    /**
+     * POST 请求，响应的 data 部分以流的方式直接反序列化为指定的泛型类型（如 List&lt;T&gt;, Map&lt;String, T&gt;）。
+     * 
+     * @param type 响应 data 的数据类型
+     * @param path 请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     * @param query 请求URL参数（Query String）
+     * @param headers 请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> T post(@NonNull TypeToken<T> type, String path, Object data, Map<String, Object> query,
+            Map<String, Object> headers, boolean isCheckStatus) throws IOException {
+        return requestData(Method.POST, path, query, data, headers, isCheckStatus, type.getType());
+    }
+    
+    /**
+     * 创建 multipart/form-data 形式的请求体，文件内容在发送时以流的方式读取。
+     */
+    public StreamingMultipartEntity newMultipart() {
+        return new StreamingMultipartEntity(getCharset());
+    }
+    
+    /**
+     * 上传文件（POST multipart/form-data 请求），文件内容以流的方式直接写入连接。
+     * 
+     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path  请求地址（相对URL）
+     * @param name  文件的字段名
+     * @param file  文件路径
+     */
+    public <T> T upload(Class<T> clazz, String path, String name, Path file) throws IOException {
+        return upload(clazz, path, newMultipart().addFile(name, file), null, null);
+    }
+    
+    /**
+     * 上传文件（POST multipart/form-data 请求），文件内容以流的方式直接写入连接。
+     * 
+     * @param clazz     响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path      请求地址（相对URL）
+     * @param multipart 请求体（参见 newMultipart）
+     * @param query     请求URL参数（Query String）
+     * @param headers   请求头
+     */
+    public <T> T upload(Class<T> clazz, String path, @NonNull StreamingMultipartEntity multipart,
+            Map<String, Object> query, Map<String, Object> headers) throws IOException {
+        return call(Method.POST, clazz, path, query, multipart, headers, true);
+    }
+    
+    /**
+     * 下载（GET 请求），响应内容以流的方式写入 output（不关闭 output）。
+     * 
+     * 响应码非 200 或响应为失败的 R 结构时抛出 MessageException。下载请求不缓存、不合并且不重试。
+     * 
+     * @param path    请求地址（相对URL）
+     * @param query   请求URL参数
+     * @param headers 请求头
+     * @param output  输出流
+     * @return        写入的字节数
+     */
+    public long download(String path, Map<String, Object> query, Map<String, Object> headers,
+            @NonNull final OutputStream output) throws IOException {
+        return execute(Method.GET, path, query, null, headers, null, null, new ResponseReader<Long>() {
+            @Override
+            public Long read(CloseableHttpResponse resp) throws IOException {
+                InputStream content = openDownload(resp);
+                try {
+                    int length;
+                    long total = 0;
+                    byte[] buffer = new byte[8192];
+                    while ((length = content.read(buffer)) >= 0) {
+                        output.write(buffer, 0, length);
+                        total += length;
+                    }
+                    return total;
+                } finally {
+                    content.close();
+                }
+            }
+        });
+    }
+    
+    /**
+     * 下载（GET 请求）到指定的文件（已存在时覆盖），通过 FileChannel 写入，下载失败时删除不完整的文件。
+     * 
+     * @param path    请求地址（相对URL）
+     * @param query   请求URL参数
+     * @param headers 请求头
+     * @param target  目标文件
+     * @return        写入的字节数
+     */
+    public long download(String path, Map<String, Object> query, Map<String, Object> headers,
+            @NonNull final Path target) throws IOException {
+        final AtomicBoolean opened = new AtomicBoolean(false);
+        try {
+            return execute(Method.GET, path, query, null, headers, null, null, new ResponseReader<Long>() {
+                @Override
+                public Long read(CloseableHttpResponse resp) throws IOException {
+                    ReadableByteChannel source = Channels.newChannel(openDownload(resp));
+                    try {
+                        FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                        opened.set(true);
+                        try {
+                            long position = 0;
+                            long transferred;
+                            while ((transferred = file.transferFrom(source, position, 1 << 20)) > 0) {
+                                position += transferred;
+                            }
+                            return position;
+                        } finally {
+                            file.close();
+                        }
+                    } finally {
+                        source.close();
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            if (opened.get()) {
+                Files.deleteIfExists(target);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 检查下载的响应并返回其内容流：响应码非 200 或响应为失败的 R 结构时抛出异常。
+     */
+    private InputStream openDownload(CloseableHttpResponse resp) throws IOException {
+        HttpEntity entity;
+        if ((entity = resp.getEntity()) == null) {
+            throw new MessageException("No expected response data.");
+        }
+        int statusCode = resp.getStatusLine().getStatusCode();
+        if (statusCode == HttpStatus.SC_OK && (entity.getContentType() == null
+                || !StringUtils.containsIgnoreCase(entity.getContentType().getValue(), "json"))) {
+            return entity.getContent();
+        }
+        /* JSON 响应可能为失败的 R 结构，需解析后再判断 */
+        R rx = null;
+        String bodyText = HttpUtil.getResponseText(resp, getCharset());
+        try {
+            rx = transform(bodyText, resp);
+        } catch (RuntimeException e) {
+            log.debug("Download response is not an R object : {}", e.toString());
+        }
+        if (statusCode != HttpStatus.SC_OK || (rx != null && rx.getStatus() != 0)) {
+            log.error("Download failed, response status {} : {}", statusCode, bodyText);
+            throw new MessageException(rx != null && StringUtils.isNotBlank(rx.getMessage()) ? rx.getMessage()
+                    : String.format("Download failed, response status %s.", statusCode));
+        }
+        return new ByteArrayInputStream(bodyText.getBytes(getCharset()));
+    }
+    
+    @SuppressWarnings("unused")
+    private R request(Method method, String pathQuery, Map<String, Object> query, Object data) throws IOException {
+        return request(method, pathQuery, query, data, null);
+    }
+    
+    private R request(Method method, String pathQuery, Map<String, Object> query, Object data,
+            Map<String, Object> headers) throws IOException {
+        return request(method, pathQuery, query, data, headers, true);
+    }
+    
+    private R request(Method method, String pathQuery, Map<String, Object> query, Object data,
+            Map<String, Object> headers, final boolean isCheckStatus) throws IOException {
+        return request(method, pathQuery, query, data, headers, isCheckStatus, null);
+    }
+    
+    /**
+     * @param abortable 可中止的请求（用于取消预取的分页请求），为空时不可中止
+     */
+    private R request(Method method, String pathQuery, Map<String, Object> query, Object data,
+            Map<String, Object> headers, final boolean isCheckStatus, Attempt abortable) throws IOException {
+        return execute(method, pathQuery, query, data, headers, String.format("R:%s", isCheckStatus), abortable,
+                new ResponseReader<R>() {
+                    @Override
+                    public R read(CloseableHttpResponse resp) throws IOException {
+                        String bodyText = HttpUtil.getResponseText(resp, getCharset());
+                        R rx = transform(bodyText, resp);
+                        if (rx == null) {
+                            log.error("Response body : {}", bodyText);
+                            throw new MessageException("No expected response data.");
+                        }
+                        if (isCheckStatus) {
+                            if (rx.getStatus() != 0) {
+                                throw new MessageException(rx.getMessage());
+                            }
+                        }
+                        return rx;
+                    }
+                });
+    }
+    
+    /**
+     * 请求并直接从响应流中解析 R 结构，将其 data 部分一次性绑定到指定的类型。
+     * 
+     * @param dataType 响应 data 的数据类型
+     */
+    private <T> T requestData(Method method, String pathQuery, Map<String, Object> query, Object data,
+            Map<String, Object> headers, final boolean isCheckStatus, final Type dataType) throws IOException {
+        return requestData(method, pathQuery, query, data, headers, isCheckStatus, dataType, null);
+    }
+    
+    /**
+     * @param abortable 可中止的请求（用于取消预取的分页请求），为空时不可中止
+     */
+    private <T> T requestData(Method method, String pathQuery, Map<String, Object> query, Object data,
+            Map<String, Object> headers, final boolean isCheckStatus, final Type dataType, Attempt abortable)
+            throws IOException {
+        String decodeKey = String.format("T:%s:%s", dataType.getTypeName(), isCheckStatus);
+        return execute(method, pathQuery, query, data, headers, decodeKey, abortable,
+                new ResponseReader<DecodedData<T>>() {
+                    @Override
+                    public DecodedData<T> read(CloseableHttpResponse resp) throws IOException {
+                        return readResponseData(resp, dataType, isCheckStatus);
+                    }
+                }).data;
+    }
+    
+    /**
+     * 流式解析的响应结果：data 部分及响应的状态码（用于判断是否可以缓存）
+     */
+    private static class DecodedData<T> {
+        private final int status;
+        private final T data;
+        
+        private DecodedData(int status, T data) {
+            this.status = status;
+            this.data = data;
+        }
+    }
+    
+    /**
+     * 执行请求并通过 reader 读取响应内容。
+     * 
+     * @param decodeKey 响应的解析方式标识，用于区分 GET 响应缓存中相同请求的不同解析结果。
+     *                  为空时表示响应内容直接输出（如下载），此时不缓存、不合并且不重试。
+     * @param abortable 可中止的请求，为空时不可中止；可中止的请求不合并且不对冲。
+     */
+    @SuppressWarnings("unchecked")
+    private <X> X execute(Method method, String pathQuery, Map<String, Object> query, Object data,
+            Map<String, Object> headers, String decodeKey, Attempt abortable, final ResponseReader<X> reader)
+            throws IOException {
+        method = CommonUtil.ifNull(method, Method.GET);
+        headers = headers == null ? new HashMap<String, Object>() : new HashMap<String, Object>(headers);
+        headers.put("Content-Type", String.format("application/x-www-form-urlencoded;charset=%s", getCharset()));
+        byte[] body = null;
+        HttpEntity entity = null;
+        if (data instanceof HttpEntity) {
+            entity = (HttpEntity) data;
+            if (entity.getContentType() != null) {
+                headers.put("Content-Type", entity.getContentType().getValue());
+            }
+        } else if (data != null && streamingRequestBody) {
+            entity = toStreamingEntity(data);
+            headers.put("Content-Type", entity.getContentType().getValue());
+            if (requestCompressionThreshold > 0) {
+                entity = new GzipCompressingEntity(entity);
+                headers.put("Content-Encoding", "gzip");
+            }
+        } else if (data instanceof QueryMapData) {
+            body = toQueryBytes((QueryMapData) data);
+        } else if (data != null) {
+            body = JsonUtil.toJson(data).getBytes(getCharset());
+            headers.put("Content-Type", String.format("application/json;charset=%s", getCharset()));
+        }
+        if (responseCompressionEnabled) {
+            headers.put("Accept-Encoding", "gzip");
+        }
+        if (body != null && requestCompressionThreshold > 0 && body.length >= requestCompressionThreshold) {
+            body = gzip(body);
+            headers.put("Content-Encoding", "gzip");
+        }
+        String pathUrl = StringUtils.isBlank(pathQuery) ? null : pathFormatter(pathQuery, false);
+        final Exchange exchange = new Exchange(method, pathQuery, pathUrl, toFullUrl(url, pathUrl), query, headers,
+                body, entity, decodeKey);
+        exchange.abortable = abortable;
+        exchange.rawEntity = data instanceof HttpEntity;
+        InternalRestResponseCache cache = responseCache;
+        if (cache != null && decodeKey != null && Method.GET.equals(method)) {
+            exchange.cacheKey = cache.toKey(exchange.fullUrl, query, headers, decodeKey);
+            if ((exchange.cached = cache.lookup(exchange.cacheKey)) != null) {
+                if (exchange.cached.isFresh()) {
+                    return (X) exchange.cached.getValue();
+                }
+                if (StringUtils.isNotBlank(exchange.cached.getEtag())) {
+                    headers.put("If-None-Match", exchange.cached.getEtag());
+                }
+            }
+        }
+        if (coalescingGets && decodeKey != null && abortable == null && Method.GET.equals(method)) {
+            return coalesce(exchange.toCoalescingKey(), new Callable<X>() {
+                @Override
+                public X call() throws Exception {
+                    return dispatch(exchange, reader);
+                }
+            });
+        }
+        return dispatch(exchange, reader);
+    }
+    
+    /**
+     * 判断请求是否幂等（可安全重试）：GET 请求，以及 idempotentPaths 中指定的其他请求。
+     */
+    protected boolean isIdempotent(Method method, String path) {
+        if (Method.GET.equals(method)) {
+            return true;
+        }
+        Set<String> paths;
+        return (paths = idempotentPaths) != null && path != null
+                && paths.contains(pathFormatter(path, false));
+    }
+    
+    /**
+     * 在并发隔离的限制下发送请求（包括其重试及对冲请求）
+     */
+    private <X> X dispatch(Exchange exchange, ResponseReader<X> reader) throws IOException {
+        InternalRestBulkhead limiter;
+        if ((limiter = bulkhead) == null) {
+            return dispatchWithRetry(exchange, reader);
+        }
+        limiter.acquire(url);
+        try {
+            return dispatchWithRetry(exchange, reader);
+        } finally {
+            limiter.release();
+        }
+    }
+    
+    /**
+     * 按重试策略发送幂等请求，非幂等请求或未设置重试策略时仅发送一次。
+     */
+    private <X> X dispatchWithRetry(Exchange exchange, ResponseReader<X> reader) throws IOException {
+        InternalRestRetryPolicy policy;
+        if ((policy = retryPolicy) == null || exchange.decodeKey == null
+                || (exchange.entity != null && !exchange.entity.isRepeatable())
+                || !isIdempotent(exchange.method, exchange.path)) {
+            return send(exchange, reader, exchange.abortable);
+        }
+        policy.onRequest();
+        for (int attempt = 1;; attempt++) {
+            try {
+                return policy.isHedging() && exchange.abortable == null ? sendHedged(exchange, reader, policy)
+                        : send(exchange, reader, exchange.abortable);
+            } catch (IOException e) {
+                if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(e) || !policy.tryAcquireRetry()) {
+                    throw e;
+                }
+                long remaining;
+                long backoff = policy.getBackoffMS(attempt);
+                if ((remaining = RequestDeadline.getRemainingMS()) >= 0 && remaining <= backoff) {
+                    throw e;
+                }
+                log.warn("Request {} failed ({}), retry after {}ms.", exchange.fullUrl, e.toString(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(ex.toString());
+                }
+            }
+        }
+    }
+    
+    /**
+     * 对冲请求：首次请求在调用线程中发送，在近期耗时的指定百分位内未返回时，在异步线程池中再发出
+     * 一个相同的请求，以先成功返回的为准，并中止另一个请求。异步线程池拒绝对冲请求时，继续等待首次请求。
+     */
+    private <X> X sendHedged(final Exchange exchange, final ResponseReader<X> reader,
+            final InternalRestRetryPolicy policy) throws IOException {
+        final long delay;
+        if ((delay = latencyWindow.getPercentile(policy.getHedgingPercentile())) <= 0) {
+            return send(exchange, reader, null);
+        }
+        final Attempt primary = new Attempt();
+        final Attempt hedge = new Attempt();
+        final CompletableFuture<X> hedged = new CompletableFuture<X>();
+        final UserContext context = SessionContext.getUserContext();
+        final Long deadline = RequestDeadline.get();
+        ScheduledFuture<?> timer = getHedgingScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (primary) {
+                    if (primary.isFinished() || !policy.tryAcquireRetry()) {
+                        return;
+                    }
+                    hedge.start();
+                }
+                log.info("Request {} not responsed in {}ms, send a hedged request.", exchange.fullUrl, delay);
+                submitAsync(new Callable<X>() {
+                    @Override
+                    public X call() throws Exception {
+                        return send(exchange, reader, hedge);
+                    }
+                }, context, deadline).whenComplete(new BiConsumer<X, Throwable>() {
+                    @Override
+                    public void accept(X result, Throwable error) {
+                        hedge.finish();
+                        if (error == null) {
+                            hedged.complete(result);
+                            primary.abort();
+                        } else {
+                            hedged.completeExceptionally(error);
+                        }
+                    }
+                });
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        try {
+            X result = send(exchange, reader, primary);
+            primary.finish();
+            hedge.abort();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            /* 首次请求结束后不再发出对冲请求，此后对冲请求的发出状态不再变化 */
+            primary.finish();
+            if (!hedge.isStarted()) {
+                throw e;
+            }
+            /* 对冲请求已发出（且可能已成功返回），以其结果为准 */
+            try {
+                return awaitResult(hedged);
+            } catch (RejectedExecutionException ex) {
+                throw e;
+            }
+        } finally {
+            timer.cancel(false);
+        }
+    }
+    
+    /**
+     * 可中止的单个请求：对冲请求中的各个请求（由另一个先成功返回的请求中止），或预取的分页请求
+     * （取消预取时中止）
+     */
+    private static class Attempt {
+        private boolean started = false;
+        private boolean finished = false;
+        private boolean aborted = false;
+        private HttpUriRequest request;
+        private CloseableHttpResponse response;
+        
+        synchronized void start() {
+            started = true;
+        }
+        
+        synchronized boolean isStarted() {
+            return started;
+        }
+        
+        synchronized void finish() {
+            finished = true;
+        }
+        
+        synchronized boolean isFinished() {
+            return finished;
+        }
+        
+        synchronized boolean isAborted() {
+            return aborted;
+        }
+        
+        /**
+         * 记录正在发送的请求，已被中止时立即中止该请求
+         */
+        synchronized void bind(HttpUriRequest request) {
+            if (aborted) {
+                request.abort();
+            }
+            this.request = request;
+        }
+        
+        /**
+         * 记录收到的响应，已被中止时关闭该响应并抛出异常
+         */
+        synchronized void bind(CloseableHttpResponse response) throws IOException {
+            if (aborted) {
+                HttpUtil.close(response);
+                throw new InterruptedIOException("Request aborted.");
+            }
+            this.response = response;
+        }
+        
+        /**
+         * 中止请求：请求未返回时中止请求，已返回时关闭响应（中断响应内容的读取）
+         */
+        synchronized void abort() {
+            if (finished || aborted) {
+                return;
+            }
+            aborted = true;
+            if (request != null) {
+                request.abort();
+            }
+            if (response != null) {
+                HttpUtil.close(response);
+            }
+        }
+    }
+    
+    synchronized private static ScheduledExecutorService getHedgingScheduler() {
+        if (hedgingScheduler == null) {
+            hedgingScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "internal-rest-hedging");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return hedgingScheduler;
+    }
+    
+    /**
+     * 发送请求并读取响应内容，同时维护 GET 响应缓存。
+     * 
+     * @param attempt 可中止的单个请求，为空时不可中止
+     */
+    @SuppressWarnings("unchecked")
+    private <X> X send(Exchange exchange, ResponseReader<X> reader, Attempt attempt) throws IOException {
+        long remaining;
+        if ((remaining = RequestDeadline.getRemainingMS()) == 0) {
+            throw new InternalRestDeadlineExceededException(url);
+        }
+        InternalRestResponseCache cache = responseCache;
+        InternalRestCircuitBreaker breaker = circuitBreakerEnabled ? getCircuitBreaker() : null;
+        /* 上传、下载的耗时取决于数据量，不使用自适应超时 */
+        int timeout = timeoutMS;
+        if (breaker != null && adaptiveTimeoutEnabled && !exchange.isStreamed()) {
+            timeout = breaker.getTimeout(timeoutMS);
+        }
+        if (remaining > 0) {
+            timeout = (int) (timeout > 0 ? Math.min(timeout, remaining) : Math.min(Integer.MAX_VALUE, remaining));
+        }
+        /* 将本次请求的超时时间作为下游服务的时间预算 */
+        Map<String, Object> headers = exchange.headers;
+        if (timeout > 0) {
+            headers = new HashMap<String, Object>(headers);
+            headers.put(RequestDeadline.getHeader(), timeout);
+        }
+        int statusCode = 0;
+        boolean failed = true;
+        boolean aborted = false;
+        boolean messageError = false;
+        long responseBytes = -1;
+        long started = System.currentTimeMillis();
+        CloseableHttpResponse resp = null;
+        InternalRestBalancer.Host host = null;
+        /* 许可紧邻 try 获取，确保半开状态的探测许可总能被归还 */
+        InternalRestCircuitBreaker.Permit permit = null;
+        if (breaker != null && (permit = breaker.tryAcquire()) == null) {
+            throw new InternalRestCircuitOpenException(url);
+        }
+        try {
+            /* 在 try 内选取节点，确保任何异常都会释放其在途计数 */
+            if (balancer != null) {
+                host = balancer.acquire();
+            }
+            String targetUrl = host == null ? exchange.fullUrl : toFullUrl(host.getUrl(), exchange.pathUrl);
+            resp = sendRequest(exchange, targetUrl, headers, timeout, attempt);
+            statusCode = resp.getStatusLine().getStatusCode();
+            failed = statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            HttpEntity entity;
+            if ((entity = resp.getEntity()) != null) {
+                responseBytes = entity.getContentLength();
+                if (entity.getContentEncoding() != null
+                        && StringUtils.containsIgnoreCase(entity.getContentEncoding().getValue(), "gzip")) {
+                    resp.setEntity(new GzipDecompressingEntity(entity));
+                }
+            }
+            if (exchange.cached != null && cache != null && statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                cache.revalidated(exchange.cached, resp);
+                return (X) exchange.cached.getValue();
+            }
+            X result = reader.read(resp);
+            if (exchange.cacheKey != null && cache != null && statusCode == HttpStatus.SC_OK
+                    && isSuccessResult(result)) {
+                cache.store(exchange.cacheKey, result, resp);
+            }
+            return result;
+        } catch (MessageException e) {
+            messageError = true;
+            throw e;
+        } catch (IOException e) {
+            /* 被主动中止（如先返回的对冲请求）时，不视为失败 */
+            aborted = attempt != null && attempt.isAborted();
+            failed = !aborted;
+            throw e;
+        } finally {
+            long elapsed = System.currentTimeMillis() - started;
+            if (statusCode > 0 && !exchange.isStreamed()) {
+                latencyWindow.record(elapsed);
+            }
+            if (breaker != null) {
+                if (aborted) {
+                    breaker.release(permit);
+                } else {
+                    breaker.record(permit, failed, elapsed, !exchange.isStreamed());
+                }
+            }
+            if (host != null) {
+                balancer.release(host, failed);
+            }
+            InternalRestMetricsSink sink;
+            if ((sink = metricsSink) != null) {
+                sink.record(url, exchange.path, statusCode, elapsed, exchange.getBodyLength(), responseBytes,
+                        messageError);
+            }
+            HttpUtil.close(resp);
+        }
+    }
+    
+    /**
+     * 发送请求。流式请求体通过 ContextHttpClient 的连接池发送，请求客户端不支持时（子类自定义的
+     * HttpUtil），退化为生成完整的请求体后发送。对冲请求在可能时记录请求对象，以便中止。
+     */
+    private CloseableHttpResponse sendRequest(Exchange exchange, String targetUrl, Map<String, Object> headers,
+            int timeout, Attempt attempt) throws IOException {
+        HttpUtil client = getHttpClient();
+        CloseableHttpResponse resp;
+        if (client instanceof ContextHttpClient && (exchange.entity != null
+                || (attempt != null && ((ContextHttpClient) client).isDedicated()))) {
+            HttpEntity entity = exchange.entity != null ? exchange.entity
+                    : exchange.body == null ? null : new ByteArrayEntity(exchange.body);
+            HttpUriRequest request = ((ContextHttpClient) client).newRequest(targetUrl, exchange.method.name(),
+                    exchange.query, headers, entity, timeout);
+            if (attempt != null) {
+                attempt.bind(request);
+            }
+            resp = ((ContextHttpClient) client).execute(request);
+        } else if (exchange.entity != null) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            exchange.entity.writeTo(body);
+            resp = client.request(targetUrl, exchange.method.name(), exchange.query, headers,
+                    body.toByteArray(), timeout);
+        } else {
+            resp = client.request(targetUrl, exchange.method.name(), exchange.query, headers, exchange.body,
+                    timeout);
+        }
+        if (attempt != null) {
+            attempt.bind(resp);
+        }
+        return resp;
+    }
+    
+    /**
+     * 判断解析后的响应状态码是否为 0（成功），仅成功的响应可以缓存
+     */
+    private static boolean isSuccessResult(Object result) {
+        if (result instanceof R) {
+            return ((R) result).getStatus() == 0;
+        }
+        return result instanceof DecodedData && ((DecodedData<?>) result).status == 0;
+    }
+    
+    private static String toFullUrl(String baseUrl, String pathUrl) {
+        return pathUrl == null ? baseUrl : HttpUtil.concatUrlPath(baseUrl, pathUrl);
+    }
+    
+    /**
+     * 获取当前服务根路径对应的熔断器（可用于查看熔断状态或调整熔断参数）
+     */
+    public InternalRestCircuitBreaker getCircuitBreaker() {
+        return InternalRestCircuitBreaker.get(url);
+    }
+    
+    /**
+     * 合并相同的并发请求：同一时刻仅有一个请求真正发出，其余请求等待并共享其结果。
+     */
+    @SuppressWarnings("unchecked")
+    private <X> X coalesce(String key, Callable<X> task) throws IOException {
+        CompletableFuture<Object> existing;
+        CompletableFuture<Object> flight = new CompletableFuture<Object>();
+        if ((existing = inflightGets.putIfAbsent(key, flight)) != null) {
+            return (X) awaitResult(existing);
+        }
+        try {
+            X result = task.call();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw new IOException(e);
+        } finally {
+            inflightGets.remove(key, flight);
+        }
+    }
+    
+    /**
+     * 等待异步执行的结果，并还原执行过程中的异常
+     */
+    static <X> X awaitResult(Future<X> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.toString());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    /**
+     * 单次请求的数据
+     */
+    private static class Exchange {
+        private final Method method;
+        private final String path;
+        private final String pathUrl;
+        private final String fullUrl;
+        private final Map<String, Object> query;
+        private final Map<String, Object> headers;
+        private final byte[] body;
+        private final HttpEntity entity;
+        private final String decodeKey;
+        private boolean rawEntity;
+        private String cacheKey;
+        private InternalRestResponseCache.CachedResponse cached;
+        private Attempt abortable;
+        
+        private Exchange(Method method, String path, String pathUrl, String fullUrl, Map<String, Object> query,
+                Map<String, Object> headers, byte[] body, HttpEntity entity, String decodeKey) {
+            this.method = method;
+            this.path = path;
+            this.pathUrl = pathUrl;
+            this.fullUrl = fullUrl;
+            this.query = query;
+            this.headers = headers;
+            this.body = body;
+            this.entity = entity;
+            this.decodeKey = decodeKey;
+        }
+        
+        /**
+         * 是否为上传或下载（响应直接输出，或由调用方提供请求体）：其耗时取决于数据量，
+         * 不使用自适应超时，也不统计慢请求
+         */
+        private boolean isStreamed() {
+            return decodeKey == null || rawEntity;
+        }
+        
+        /**
+         * 请求体的字节数，流式请求体返回 -1（未知）
+         */
+        private long getBodyLength() {
+            if (entity != null) {
+                return entity.getContentLength();
+            }
+            return body == null ? 0 : body.length;
+        }
+        
+        /**
+         * 请求合并的键：请求方式 + 完整地址 + 查询参数 + 请求头 + 响应的解析方式
+         */
+        private String toCoalescingKey() {
+            StringBuilder key = new StringBuilder(method.name()).append(' ').append(fullUrl);
+            if (query != null && !query.isEmpty()) {
+                key.append('?').append(HttpUtil.toQueryString(new TreeMap<String, Object>(query)));
+            }
+            for (Map.Entry<String, Object> header : new TreeMap<String, Object>(headers).entrySet()) {
+                key.append('\n').append(header.getKey()).append(':').append(header.getValue());
+            }
+            return key.append('\n').append(decodeKey).toString();
+        }
+    }
+    
+    /**
+     * 响应内容读取器
      */
-    public <T> T post(Class<T> clazz, String path, Map<String, Object> query)
-            throws IOException {
-        return post(clazz, path, (Object)null, query);
+    protected static interface ResponseReader<X> {
+        X read(CloseableHttpResponse response) throws IOException;
     }
     
     /**
-     * POST 请求.
+     * 以流的方式解析响应的 status/message/data 属性，data 直接反序列化为目标类型，
+     * 避免响应文本、R 对象及其重新序列化结果在内存中同时存在。
      * 
-     * @param clazz 响应对象类型
-     * @param path  请求地址
-     * @param query 请求BODY数据（form-urlencoded形式）
+     * 需检查状态码而 data 出现在 status 之前时，先将 data 暂存为 JsonElement，待确认状态码后再转换。
      */
-    public <T> T post(Class<T> clazz, String path, QueryMapData query)
+    @SuppressWarnings("unchecked")
+    private <T> DecodedData<T> readResponseData(CloseableHttpResponse resp, Type dataType, boolean isCheckStatus)
             throws IOException {
-        return post(clazz, path, (Object)query, (Map<String, Object>)null);
+        HttpEntity entity;
+        if (resp == null || (entity = resp.getEntity()) == null) {
+            throw new MessageException("No expected response data.");
+        }
+        Gson gson = getGson();
+        JsonReader reader = new JsonReader(new InputStreamReader(entity.getContent(), getCharset()));
+        try {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                log.error("Response body is not an object : {}", reader.peek());
+                throw new MessageException("No expected response data.");
+            }
+            int status = 0;
+            boolean statusRead = false;
+            T result = null;
+            JsonElement pending = null;
+            String message = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if ("status".equals(name)) {
+                    status = reader.nextInt();
+                    statusRead = true;
+                } else if ("message".equals(name) && reader.peek() == JsonToken.STRING) {
+                    message = reader.nextString();
+                } else if ("data".equals(name) && isCheckStatus && !statusRead) {
+                    pending = gson.getAdapter(JsonElement.class).read(reader);
+                } else if ("data".equals(name) && !(isCheckStatus && status != 0)) {
+                    result = (T) gson.getAdapter(TypeToken.get(dataType)).read(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (isCheckStatus && status != 0) {
+                throw new MessageException(message);
+            }
+            if (pending != null) {
+                result = (T) gson.fromJson(pending, dataType);
+            }
+            return new DecodedData<T>(status, result);
+        } catch (EOFException e) {
+            throw new MessageException("No expected response data.");
+        } finally {
+            reader.close();
+        }
     }
     
     /**
-     * POST 请求.
-     * 
-     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
-     * @param path 请求地址（相对URL）
-     * @param data
-     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
-     * @param query 请求URL参数（Query String）
+     * 是否以流的方式解析响应数据。子类（含其父类）重写了 transform 或 fromObject 方法时，
+     * 默认沿用先解析为 R 对象再转换的方式以保持其自定义行为；确认可流式解析的子类可重写
+     * 此方法并返回 true。检测结果按类缓存。
      */
-    public <T> T post(Class<T> clazz, String path, Object data, Map<String, Object> query) throws IOException {
-        return post(clazz, path, data, query, null);
+    protected boolean isStreamingDecodable() {
+        Boolean decodable;
+        Class<?> clazz = getClass();
+        if ((decodable = STREAMING_DECODABLE.get(clazz)) == null) {
+            decodable = true;
+            for (Class<?> c = clazz; c != null && !AbstractInternalRestService.class.equals(c); c = c.getSuperclass()) {
+                if (hasDeclaredMethod(c, "transform", String.class, HttpResponse.class)
+                        || hasDeclaredMethod(c, "fromObject", Object.class, Class.class)) {
+                    decodable = false;
+                    break;
+                }
+            }
+            STREAMING_DECODABLE.put(clazz, decodable);
+        }
+        return decodable;
+    }
+    
+    private static boolean hasDeclaredMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            clazz.getDeclaredMethod(name, parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
     }
     
     /**
-     * POST 请求.
-     * 
-     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
-     * @param path 请求地址（相对URL）
-     * @param data
-     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
-     * @param query 请求URL参数（Query String）
-     * @param headers 请求头
-     * @return
-     * @throws IOException
+     * 发起请求并将响应的 data 部分转换为指定的类型。
      */
-    public <T> T post(Class<T> clazz, String path, Object data, Map<String, Object> query, Map<String, Object> headers)
-            throws IOException {
-        return post(clazz, path, data, query, headers, true);
+    private <T> T call(Method method, Class<T> clazz, String path, Map<String, Object> query, Object data,
+            Map<String, Object> headers, boolean isCheckStatus) throws IOException {
+        return call(method, clazz, path, query, data, headers, isCheckStatus, null);
     }
     
     /**
-     * 
-     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
-     * @param path 请求地址（相对URL）
-     * @param data
-     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
-     * @param query 请求URL参数（Query String）
-     * @param headers 请求头
-     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
-     * @return
-     * @throws IOException
+     * @param abortable 可中止的请求（用于中止超过整体时限的批量请求），为空时不可中止
      */
     @SuppressWarnings("unchecked")
-    public <T> T post(Class<T> clazz, String path, Object data, Map<String, Object> query, Map<String, Object> headers,
-            boolean isCheckStatus) throws IOException {
-        R r = request(Method.POST, path, query, data, headers, isCheckStatus);
+    private <T> T call(Method method, Class<T> clazz, String path, Map<String, Object> query, Object data,
+            Map<String, Object> headers, boolean isCheckStatus, Attempt abortable) throws IOException {
         if (clazz == null) {
+            request(method, path, query, data, headers, isCheckStatus, abortable);
             return null;
         }
         if (R.class.equals(clazz)) {
-            return (T) r;
-        }
-        return fromObject(r.getData(), clazz);
-    }
-    
-    @SuppressWarnings("unused")
-    private R request(Method method, String pathQuery, Map<String, Object> query, Object data) throws IOException {
-        return request(method, pathQuery, query, data, null);
-    }
-    
-    private R request(Method method, String pathQuery, Map<String, Object> query, Object data,
-            Map<String, Object> headers) throws IOException {
-        return request(method, pathQuery, query, data, headers, true);
-    }
-    
-    private R request(Method method, String pathQuery, Map<String, Object> query, Object data,
-            Map<String, Object> headers, boolean isCheckStatus) throws IOException {
-        byte[] body = null;
-        if (headers == null) {
-            headers = new HashMap<String, Object>();
+            return (T) request(method, path, query, data, headers, isCheckStatus, abortable);
         }
-        headers.put("Content-Type", String.format("application/x-www-form-urlencoded;charset=%s", getCharset()));
-        if (data instanceof QueryMapData) {
-            body = toQueryBytes((QueryMapData) data);
-        } else if (data != null) {
-            body = JsonUtil.toJson(data).getBytes(getCharset());
-            headers.put("Content-Type", String.format("application/json;charset=%s", getCharset()));
+        if (!isStreamingDecodable()) {
+            return fromObject(request(method, path, query, data, headers, isCheckStatus, abortable).getData(), clazz);
         }
-		String fullUrl = StringUtils.isBlank(pathQuery) ? url
-				: HttpUtil.concatUrlPath(url, pathFormatter(pathQuery, false));
-		CloseableHttpResponse resp = null;
-		try {
-			resp = getHttpClient().request(fullUrl, CommonUtil.ifNull(method, Method.GET).name(), query, headers, body,
-					timeoutMS);
-			String bodyText = HttpUtil.getResponseText(resp, getCharset());
-			R rx = transform(bodyText, resp);
-			if (rx == null) {
-				log.error("Response body : {}", bodyText);
-				throw new MessageException("No expected response data.");
-			}
-			if (isCheckStatus) {
-				if (rx.getStatus() != 0) {
-					throw new MessageException(rx.getMessage());
-				}
-			}
-			return rx;
-		} finally {
-			HttpUtil.close(resp);
-		}
+        return requestData(method, path, query, data, headers, isCheckStatus, clazz, abortable);
     }
 //    /**
 //     * RESTFUL CREATE 方法：同POST请求。
@@ -534,7 +1727,7 @@ public class AbstractInternalRestService {
     public <T> T get(@NonNull Class<T> clazz, String path, Map<String, Object> query) throws IOException {
         return get(clazz, path, null, null);
     }
-
+    
     public <T> T get(Class<T> clazz, String path, Map<String, Object> query, Map<String, Object> headers)
             throws IOException {
         return get(clazz, path, query, headers,true);
@@ -548,19 +1741,457 @@ public class AbstractInternalRestService {
      * @return            指定数据类型的对象。注意：如果对象是集合或数组，请使用 list 方法。
      * @throws IOException
      */
-    @SuppressWarnings("unchecked")
     public <T> T get(Class<T> clazz, String path, Map<String, Object> query, Map<String, Object> headers,boolean isCheckStatus)
             throws IOException {
-        R r = request(Method.GET, path, query, null, headers,isCheckStatus);
-        if (clazz == null) {
-            return null;
+        return call(Method.GET, clazz, path, query, null, headers, isCheckStatus);
+    }
+    
+    /**
+     * GET 请求，响应的 data 部分以流的方式直接反序列化为指定的泛型类型（如 List&lt;T&gt;, Map&lt;String, T&gt;）。
+     * 
+     * @param type        响应 data 的数据类型
+     * @param path        请求地址
+     */
+    public <T> T get(@NonNull TypeToken<T> type, String path) throws IOException {
+        return get(type, path, null, null, true);
+    }
+    
+    /**
+     * GET 请求，响应的 data 部分以流的方式直接反序列化为指定的泛型类型（如 List&lt;T&gt;, Map&lt;String, T&gt;）。
+     * 
+     * @param type        响应 data 的数据类型
+     * @param path        请求地址
+     * @param query       请求URL参数
+     */
+    public <T> T get(@NonNull TypeToken<T> type, String path, Map<String, Object> query) throws IOException {
+        return get(type, path, query, null, true);
+    }
+    
+    /**
+     * GET 请求，响应的 data 部分以流的方式直接反序列化为指定的泛型类型（如 List&lt;T&gt;, Map&lt;String, T&gt;）。
+     * 
+     * @param type          响应 data 的数据类型
+     * @param path          请求地址
+     * @param query         请求URL参数
+     * @param headers       请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> T get(@NonNull TypeToken<T> type, String path, Map<String, Object> query, Map<String, Object> headers,
+            boolean isCheckStatus) throws IOException {
+        return requestData(Method.GET, path, query, null, headers, isCheckStatus, type.getType());
+    }
+    
+    /**
+     * 异步 GET 请求，在服务的异步线程池中执行，并延续当前的会话上下文。
+     * 
+     * @param clazz       数据类型
+     * @param path        请求地址
+     */
+    public <T> CompletableFuture<T> getAsync(Class<T> clazz, String path) {
+        return getAsync(clazz, path, null, null, true);
+    }
+    
+    /**
+     * 异步 GET 请求，在服务的异步线程池中执行，并延续当前的会话上下文。
+     * 
+     * @param clazz       数据类型
+     * @param path        请求地址
+     * @param query       请求URL参数
+     */
+    public <T> CompletableFuture<T> getAsync(Class<T> clazz, String path, Map<String, Object> query) {
+        return getAsync(clazz, path, query, null, true);
+    }
+    
+    /**
+     * 异步 GET 请求，在服务的异步线程池中执行，并延续当前的会话上下文。
+     * 
+     * @param clazz         数据类型
+     * @param path          请求地址
+     * @param query         请求URL参数
+     * @param headers       请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> CompletableFuture<T> getAsync(final Class<T> clazz, final String path, final Map<String, Object> query,
+            final Map<String, Object> headers, final boolean isCheckStatus) {
+        return submitAsync(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return get(clazz, path, query, headers, isCheckStatus);
+            }
+        });
+    }
+    
+    /**
+     * 异步 GET 请求，响应的 data 部分直接反序列化为指定的泛型类型。
+     * 
+     * @param type          响应 data 的数据类型
+     * @param path          请求地址
+     * @param query         请求URL参数
+     * @param headers       请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> CompletableFuture<T> getAsync(@NonNull final TypeToken<T> type, final String path,
+            final Map<String, Object> query, final Map<String, Object> headers, final boolean isCheckStatus) {
+        return submitAsync(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return get(type, path, query, headers, isCheckStatus);
+            }
+        });
+    }
+    
+    /**
+     * 异步 POST 请求，在服务的异步线程池中执行，并延续当前的会话上下文。
+     * 
+     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path  请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     */
+    public <T> CompletableFuture<T> postAsync(Class<T> clazz, String path, Object data) {
+        return postAsync(clazz, path, data, null, null, true);
+    }
+    
+    /**
+     * 异步 POST 请求，在服务的异步线程池中执行，并延续当前的会话上下文。
+     * 
+     * @param clazz 响应对象类型。若为 R 类型，则返回整个请求内容。
+     * @param path  请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     * @param query 请求URL参数（Query String）
+     * @param headers 请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> CompletableFuture<T> postAsync(final Class<T> clazz, final String path, final Object data,
+            final Map<String, Object> query, final Map<String, Object> headers, final boolean isCheckStatus) {
+        return submitAsync(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return post(clazz, path, data, query, headers, isCheckStatus);
+            }
+        });
+    }
+    
+    /**
+     * 异步 POST 请求，响应的 data 部分直接反序列化为指定的泛型类型。
+     * 
+     * @param type 响应 data 的数据类型
+     * @param path 请求地址（相对URL）
+     * @param data
+     * 请求BODY数据：如果为QueryMapData对象将以form-urlencoded形式添加到BODY中，否则将以JSON形式添加到BODY中。
+     * @param query 请求URL参数（Query String）
+     * @param headers 请求头
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> CompletableFuture<T> postAsync(@NonNull final TypeToken<T> type, final String path, final Object data,
+            final Map<String, Object> query, final Map<String, Object> headers, final boolean isCheckStatus) {
+        return submitAsync(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return post(type, path, data, query, headers, isCheckStatus);
+            }
+        });
+    }
+    
+    /**
+     * 批量请求，在异步线程池中以指定的并发数执行，结果与请求的顺序一一对应。
+     * 
+     * 单项请求失败不影响其他请求，失败原因记录在对应结果的 error 中；超过整体时限仍未
+     * 完成的请求，其结果为 TimeoutException；因异步线程池拒绝等原因未能执行的请求，其结果
+     * 为实际的异常（如 RejectedExecutionException）。注意不要在本服务的异步线程中调用此方法。
+     * 
+     * 整体时限通过 RequestDeadline 传递给每项请求（不超过调用方已有的截止时间），各项请求的超时
+     * 时间及传给下游服务的时间预算均为剩余的时间；到达整体时限时，中止仍在执行的请求。批量中的
+     * 请求可被中止，因此不合并且不对冲。
+     * 
+     * @param clazz         数据类型。若为 R 类型，则返回整个请求内容。
+     * @param requests      请求清单
+     * @param concurrency   最大并发数
+     * @param deadlineMS    整体时限（毫秒），小于等于 0 时不限制
+     * @param isCheckStatus 是否检查返回状态码, 当请求的响应码非 0 时，视为请求失败。
+     */
+    public <T> List<BatchResult<T>> batch(Class<T> clazz, List<BatchRequest> requests, int concurrency,
+            long deadlineMS, boolean isCheckStatus) {
+        return batch(clazz, null, requests, concurrency, deadlineMS, isCheckStatus);
+    }
+    
+    /**
+     * 批量请求，响应的 data 部分直接反序列化为指定的泛型类型，其余同
+     * {@link #batch(Class, List, int, long, boolean)}。
+     */
+    public <T> List<BatchResult<T>> batch(@NonNull TypeToken<T> type, List<BatchRequest> requests, int concurrency,
+            long deadlineMS, boolean isCheckStatus) {
+        return batch(null, type.getType(), requests, concurrency, deadlineMS, isCheckStatus);
+    }
+    
+    private <T> List<BatchResult<T>> batch(final Class<T> clazz, final Type type, final List<BatchRequest> requests,
+            int concurrency, long deadlineMS, final boolean isCheckStatus) {
+        if (requests == null || requests.isEmpty()) {
+            return Collections.emptyList();
         }
-        if (R.class.equals(clazz)) {
-            return (T) r;
+        final int total = requests.size();
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicBoolean expired = new AtomicBoolean(false);
+        final AtomicReferenceArray<BatchResult<T>> results = new AtomicReferenceArray<BatchResult<T>>(total);
+        final AtomicReferenceArray<Attempt> attempts = new AtomicReferenceArray<Attempt>(total);
+        final long batchDeadline = deadlineMS > 0 ? System.currentTimeMillis() + deadlineMS : Long.MAX_VALUE;
+        /* 各项请求的截止时间：整体时限与调用方截止时间中较早的一个 */
+        Long itemDeadline = RequestDeadline.get();
+        if (deadlineMS > 0 && (itemDeadline == null || itemDeadline > batchDeadline)) {
+            itemDeadline = batchDeadline;
+        }
+        UserContext context = SessionContext.getUserContext();
+        List<CompletableFuture<Void>> workers = new ArrayList<CompletableFuture<Void>>();
+        for (int w = Math.min(Math.max(concurrency, 1), total); w > 0; w--) {
+            workers.add(submitAsync(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    int index;
+                    while (!expired.get() && System.currentTimeMillis() < batchDeadline
+                            && (index = nextIndex.getAndIncrement()) < total) {
+                        BatchRequest req = requests.get(index);
+                        Attempt attempt = new Attempt();
+                        attempts.set(index, attempt);
+                        try {
+                            results.set(index,
+                                    new BatchResult<T>(batchItem(req, clazz, type, isCheckStatus, attempt), null));
+                        } catch (Exception e) {
+                            /* 被中止或在整体时限后才失败的请求，统一视为超时 */
+                            if (!attempt.isAborted() && System.currentTimeMillis() < batchDeadline) {
+                                results.set(index, new BatchResult<T>(null, e));
+                            }
+                        } finally {
+                            attempt.finish();
+                        }
+                    }
+                    return null;
+                }
+            }, context, itemDeadline));
+        }
+        /* 未完成请求的失败原因，为空时表示超过整体时限 */
+        Throwable cause = null;
+        CompletableFuture<Void> all = CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[workers.size()]));
+        try {
+            if (deadlineMS > 0) {
+                all.get(deadlineMS, TimeUnit.MILLISECONDS);
+            } else {
+                all.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cause = e;
+        } catch (ExecutionException e) {
+            cause = e.getCause();
+            log.warn("Batch requests not all completed : {}", cause.toString());
+        } catch (TimeoutException e) {
+            log.warn("Batch requests not all completed : {}", e.toString());
+        } finally {
+            expired.set(true);
+            for (int i = 0; i < total; i++) {
+                Attempt attempt;
+                if ((attempt = attempts.get(i)) != null) {
+                    attempt.abort();
+                }
+            }
+        }
+        List<BatchResult<T>> list = new ArrayList<BatchResult<T>>(total);
+        for (int i = 0; i < total; i++) {
+            BatchResult<T> result;
+            if ((result = results.get(i)) == null) {
+                result = new BatchResult<T>(null,
+                        cause != null ? cause : new TimeoutException("Batch request deadline exceeded."));
+            }
+            list.add(result);
+        }
+        return list;
+    }
+    
+    private <T> T batchItem(BatchRequest req, Class<T> clazz, Type type, boolean isCheckStatus, Attempt abortable)
+            throws IOException {
+        if (req == null) {
+            throw new IllegalArgumentException("Batch request item is null.");
+        }
+        if (type != null) {
+            return requestData(req.getMethod(), req.getPath(), req.getQuery(), req.getData(), req.getHeaders(),
+                    isCheckStatus, type, abortable);
+        }
+        return call(req.getMethod(), clazz, req.getPath(), req.getQuery(), req.getData(), req.getHeaders(),
+                isCheckStatus, abortable);
+    }
+    
+    /**
+     * 分页遍历列表（GET 请求），每页的数据在遍历到时才请求获取，内存中仅保留当前页及预取的下一页。
+     * 
+     * 请求时在 query 中添加页码（pageParameter）及页大小（pageSizeParameter）参数，响应的 data 须为
+     * 当页的数据列表，数据条数少于页大小时视为最后一页。
+     * 
+     * @param clazz       列表内的数据类型
+     * @param path        请求地址
+     * @param query       请求URL参数
+     * @param pageSize    页大小
+     */
+    public <T> InternalRestPageIterator<T> iterate(@NonNull Class<T> clazz, String path, Map<String, Object> query,
+            int pageSize) {
+        return iterate(clazz, path, query, null, pageSize);
+    }
+    
+    /**
+     * 分页遍历列表（GET 请求），同 {@link #iterate(Class, String, Map, int)}。
+     * 
+     * @param clazz       列表内的数据类型
+     * @param path        请求地址
+     * @param query       请求URL参数
+     * @param headers     请求头
+     * @param pageSize    页大小
+     */
+    public <T> InternalRestPageIterator<T> iterate(@NonNull Class<T> clazz, String path, Map<String, Object> query,
+            Map<String, Object> headers, int pageSize) {
+        return iterate(clazz, null, path, query, headers, pageSize);
+    }
+    
+    /**
+     * 分页遍历列表（GET 请求），列表内的数据反序列化为指定的泛型类型，其余同
+     * {@link #iterate(Class, String, Map, int)}。
+     * 
+     * @param type        列表内的数据类型
+     * @param path        请求地址
+     * @param query       请求URL参数
+     * @param headers     请求头
+     * @param pageSize    页大小
+     */
+    public <T> InternalRestPageIterator<T> iterate(@NonNull TypeToken<T> type, String path,
+            Map<String, Object> query, Map<String, Object> headers, int pageSize) {
+        return iterate(null, type.getType(), path, query, headers, pageSize);
+    }
+    
+    /**
+     * 分页遍历列表并以流的方式返回，使用完毕后请关闭流（以取消预取），其余同
+     * {@link #iterate(Class, String, Map, int)}。
+     */
+    public <T> Stream<T> stream(@NonNull Class<T> clazz, String path, Map<String, Object> query, int pageSize) {
+        return iterate(clazz, path, query, pageSize).stream();
+    }
+    
+    private <T> InternalRestPageIterator<T> iterate(final Class<T> clazz, final Type type, final String path,
+            final Map<String, Object> query, final Map<String, Object> headers, int pageSize) {
+        return new InternalRestPageIterator<T>(firstPage, pageSize, pagePrefetch) {
+            @Override
+            protected List<?> loadPage(int page, int pageSize) throws IOException {
+                return loadPage(page, pageSize, null);
+            }
+            
+            private List<?> loadPage(int page, int pageSize, Attempt abortable) throws IOException {
+                Map<String, Object> pageQuery = query == null ? new HashMap<String, Object>()
+                        : new HashMap<String, Object>(query);
+                pageQuery.put(getPageParameter(), page);
+                pageQuery.put(getPageSizeParameter(), pageSize);
+                if (!isStreamingDecodable()) {
+                    return (List<?>) request(Method.GET, path, pageQuery, null, headers, true, abortable).getData();
+                }
+                return requestData(Method.GET, path, pageQuery, null, headers, true, PAGE_ITEMS_TYPE, abortable);
+            }
+            
+            /**
+             * 异步预取，预取被取消时中止正在执行的请求
+             */
+            @Override
+            protected CompletableFuture<List<?>> loadPageAsync(final int page, final int pageSize) {
+                final Attempt abortable = new Attempt();
+                CompletableFuture<List<?>> future = submitAsync(new Callable<List<?>>() {
+                    @Override
+                    public List<?> call() throws Exception {
+                        return loadPage(page, pageSize, abortable);
+                    }
+                });
+                future.whenComplete(new BiConsumer<List<?>, Throwable>() {
+                    @Override
+                    public void accept(List<?> result, Throwable error) {
+                        if (error instanceof CancellationException) {
+                            abortable.abort();
+                        }
+                    }
+                });
+                return future;
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            protected T convert(Object item) {
+                if (type == null) {
+                    return fromObject(item, clazz);
+                }
+                Gson gson = getGson();
+                return (T) gson.fromJson(item instanceof JsonElement ? (JsonElement) item : gson.toJsonTree(item),
+                        type);
+            }
+        };
+    }
+    
+    /**
+     * 获取异步请求线程池。线程池有界，队列满时新的异步请求将直接失败。
+     */
+    public ExecutorService getAsyncExecutor() {
+        ExecutorService executor;
+        if ((executor = asyncExecutor) == null) {
+            synchronized (this) {
+                if ((executor = asyncExecutor) == null) {
+                    final String threadPrefix = String.format("internal-rest-%s-", url);
+                    final AtomicInteger threadIndex = new AtomicInteger();
+                    int poolSize = Math.max(asyncPoolSize, 1);
+                    executor = asyncExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(Math.max(asyncQueueSize, 1)), new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread = new Thread(r, threadPrefix + threadIndex.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                    ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+                }
+            }
         }
-        return fromObject(r.getData(), clazz);
+        return executor;
+    }
+    
+    /**
+     * 在异步线程池中执行任务，执行期间将会话上下文及请求截止时间设置为提交任务时的值。
+     */
+    protected <T> CompletableFuture<T> submitAsync(final Callable<T> task) {
+        return submitAsync(task, SessionContext.getUserContext(), RequestDeadline.get());
     }
     
+    /**
+     * 在异步线程池中执行任务，执行期间将会话上下文及请求截止时间设置为给定的值。
+     */
+    private <T> CompletableFuture<T> submitAsync(final Callable<T> task, final UserContext context,
+            final Long deadline) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            getAsyncExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    UserContext origin = SessionContext.getUserContext();
+                    Long originDeadline = RequestDeadline.get();
+                    SessionContext.setUserContext(context);
+                    RequestDeadline.set(deadline);
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        SessionContext.setUserContext(origin);
+                        RequestDeadline.set(originDeadline);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
 //    /**
 //     * 当返回数据为列表或数组时，必须使用此方法进行数据反序列化（默认 GET 请求）。
 //     * 
@@ -668,7 +2299,7 @@ public class AbstractInternalRestService {
 //        }
 //        return list; 
 //    }
-    
+
 //    /**
 //     * 当返回数据为Map<String, ?>对象时，必须使用此方法进行数据反序列化（默认 GET 请求）。
 //     * 
@@ -854,7 +2485,7 @@ public class AbstractInternalRestService {
 //    }
 //    
 	/**
-	 * 将响应内容转换为 R 对象。
+	 * 将响应内容转换为 R 对象。重写此方法后，将自动改用先解析为 R 对象再转换的方式（参见 isStreamingDecodable）。
 	 * @param responseText 请求的响应文本。
 	 * @param response     请求的响应对象            
 	 * @return
@@ -864,14 +2495,35 @@ public class AbstractInternalRestService {
     }
     
     /**
-     * 将数据转换成对象。
+     * 将数据转换成对象。重写此方法后，将自动改用先解析为 R 对象再转换的方式（参见 isStreamingDecodable）。
      * @param data    数据
      * @param clazz   类型
      * @return
      */
     protected <T> T fromObject(Object data, Class<T> clazz) {
-        Gson gson = new GsonBuilder().disableHtmlEscaping()
-                .registerTypeAdapter(Date.class, new HttpMessageConverter.GsonCustomerDateJsonSerializer(getDateformat())).create();
-        return gson.fromJson(gson.toJson(data), clazz);
+        Gson gson = getGson();
+        if (data instanceof JsonElement) {
+            return gson.fromJson((JsonElement) data, clazz);
+        }
+        return gson.fromJson(gson.toJsonTree(data), clazz);
+    }
+    
+    /**
+     * 获取当前日期格式对应的 Gson 实例，同一日期格式仅创建一次。
+     * 未设置日期格式时（null 或空白），日期序列化器使用其默认格式。
+     */
+    protected Gson getGson() {
+        Gson gson;
+        String format = StringUtils.nullToEmpty(getDateformat());
+        if ((gson = GSON_REGISTRY.get(format)) == null) {
+            gson = new GsonBuilder().disableHtmlEscaping()
+                    .registerTypeAdapter(Date.class, new HttpMessageConverter.GsonCustomerDateJsonSerializer(format))
+                    .create();
+            Gson exists;
+            if ((exists = GSON_REGISTRY.putIfAbsent(format, gson)) != null) {
+                gson = exists;
+            }
+        }
+        return gson;
     }
 }
@@ -18,6 +18,7 @@ import com.socyno.base.bscmodel.SessionContext;
 import com.socyno.base.bscmodel.UserContext;
 import com.socyno.webbsc.ctxutil.ContextUtil;
 import com.socyno.webbsc.ctxutil.LoginTokenUtil;
+import com.socyno.webbsc.ctxutil.RequestDeadline;
 
 @Slf4j
 public abstract class AbstractSessionInterceptor extends HandlerInterceptorAdapter {
@@ -77,6 +78,7 @@ public abstract class AbstractSessionInterceptor extends HandlerInterceptorAdapt
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         SessionContext.setUserContext(null);
+        RequestDeadline.setBudget(request.getHeader(RequestDeadline.getHeader()));
         String tokenHeader = getTokenHeader();
         String tokenContent = StringUtils.ifBlank(request.getParameter("__" + tokenHeader), request.getHeader(tokenHeader));
         return tokenValidation(tokenHeader, tokenContent);
@@ -178,5 +180,6 @@ public abstract class AbstractSessionInterceptor extends HandlerInterceptorAdapt
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex)
             throws Exception {
         SessionContext.setUserContext(null);
+        RequestDeadline.clear();
     }
 }
@@ -0,0 +1,174 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 内部服务多个实例（根路径）间的客户端负载均衡。
+ *
+ * 按各实例当前正在执行的请求数选择实例：LEAST_OUTSTANDING 选择请求数最少的实例，
+ * POWER_OF_TWO 随机选取两个实例并选择其中请求数较少的一个（默认）。
+ *
+ * 被动剔除异常实例：实例连续失败（网络异常、超时或服务端错误）达到 ejectionFailures 次时，
+ * 将其剔除 ejectionMS（多次剔除时按次数递增，最多 10 倍），期间不再选择该实例；被剔除的
+ * 实例不超过总数的 maxEjectionRatio，所有实例均不可用时仍选择最早恢复的实例。
+ */
+@Slf4j
+public class InternalRestBalancer {
+    
+    public static enum Strategy {
+        LEAST_OUTSTANDING, POWER_OF_TWO;
+    }
+    
+    /**
+     * 服务实例
+     */
+    public static class Host {
+        @Getter
+        private final String url;
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger ejections = new AtomicInteger();
+        private final AtomicLong ejectedUntil = new AtomicLong();
+        
+        private Host(String url) {
+            this.url = url;
+        }
+        
+        /**
+         * 正在执行中的请求数
+         */
+        public int getInflight() {
+            return inflight.get();
+        }
+        
+        public boolean isEjected() {
+            return System.currentTimeMillis() < ejectedUntil.get();
+        }
+    }
+    
+    @Getter
+    private final List<Host> hosts;
+    
+    @Getter
+    @Setter
+    private volatile Strategy strategy = Strategy.POWER_OF_TWO;
+    
+    @Getter
+    @Setter
+    private volatile int ejectionFailures = 5;
+    
+    @Getter
+    @Setter
+    private volatile long ejectionMS = 30000;
+    
+    @Getter
+    @Setter
+    private volatile double maxEjectionRatio = 0.5;
+    
+    public InternalRestBalancer(@NonNull List<String> urls) {
+        List<Host> hosts = new ArrayList<Host>(urls.size());
+        for (String url : urls) {
+            hosts.add(new Host(url));
+        }
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("No service url provided.");
+        }
+        this.hosts = Collections.unmodifiableList(hosts);
+    }
+    
+    /**
+     * 选择一个实例并增加其请求计数，请求结束后须调用 release 释放。
+     */
+    public Host acquire() {
+        Host selected = select();
+        selected.inflight.incrementAndGet();
+        return selected;
+    }
+    
+    /**
+     * 请求结束，释放实例的请求计数并记录请求结果
+     *
+     * @param failed 请求是否失败（网络异常、超时或服务端错误）
+     */
+    public void release(@NonNull Host host, boolean failed) {
+        host.inflight.decrementAndGet();
+        if (!failed) {
+            host.failures.set(0);
+            if (!host.isEjected()) {
+                host.ejections.set(0);
+            }
+            return;
+        }
+        /* 剔除期间结束的请求失败不计入连续失败次数，恢复后重新累计 */
+        if (host.isEjected() || host.failures.incrementAndGet() < ejectionFailures || !canEject()) {
+            return;
+        }
+        long duration = ejectionMS * Math.min(host.ejections.incrementAndGet(), 10);
+        host.ejectedUntil.set(System.currentTimeMillis() + duration);
+        host.failures.set(0);
+        log.warn("Service host {} ejected for {}ms.", host.getUrl(), duration);
+    }
+    
+    private boolean canEject() {
+        int ejected = 0;
+        for (Host host : hosts) {
+            if (host.isEjected()) {
+                ejected++;
+            }
+        }
+        return ejected + 1 <= hosts.size() * maxEjectionRatio;
+    }
+    
+    private Host select() {
+        int size = hosts.size();
+        if (size == 1) {
+            return hosts.get(0);
+        }
+        List<Host> available = new ArrayList<Host>(size);
+        Host earliest = null;
+        for (Host host : hosts) {
+            if (!host.isEjected()) {
+                available.add(host);
+            } else if (earliest == null || host.ejectedUntil.get() < earliest.ejectedUntil.get()) {
+                earliest = host;
+            }
+        }
+        if (available.isEmpty()) {
+            return earliest;
+        }
+        if ((size = available.size()) == 1) {
+            return available.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (Strategy.LEAST_OUTSTANDING.equals(strategy)) {
+            /* 从随机位置开始遍历，请求数相同时避免总是选择第一个实例 */
+            int offset = random.nextInt(size);
+            Host selected = null;
+            for (int i = 0; i < size; i++) {
+                Host host = available.get((offset + i) % size);
+                if (selected == null || host.getInflight() < selected.getInflight()) {
+                    selected = host;
+                }
+            }
+            return selected;
+        }
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Host a = available.get(first);
+        Host b = available.get(second);
+        return b.getInflight() < a.getInflight() ? b : a;
+    }
+}
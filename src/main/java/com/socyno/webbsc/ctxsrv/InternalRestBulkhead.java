@@ -0,0 +1,179 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.io.InterruptedIOException;
+
+import com.socyno.base.bscmixutil.CommonUtil;
+import com.socyno.base.bscmixutil.StringUtils;
+import com.socyno.webbsc.ctxutil.ContextUtil;
+import com.socyno.webbsc.ctxutil.RequestDeadline;
+import com.socyno.webbsc.exception.InternalRestBulkheadFullException;
+import com.socyno.webbsc.exception.InternalRestDeadlineExceededException;
+
+import lombok.Getter;
+
+/**
+ * 内部服务的并发隔离（舱壁）：限制同时执行的请求数，超出时进入有界的等待队列，
+ * 队列已满或等待超时的请求直接失败（InternalRestBulkheadFullException），避免缓慢的
+ * 依赖服务占满所有的请求处理线程。
+ *
+ * 通过 fromConfig 创建时，每隔 10 秒从系统配置中重新读取限制，配置项为：
+ * <pre>
+ *   {prefix}.bulkhead.max.concurrent
+ *   {prefix}.bulkhead.max.queued
+ *   {prefix}.bulkhead.max.wait.ms
+ * </pre>
+ */
+public class InternalRestBulkhead {
+    
+    private final static long REFRESH_INTERVAL_MS = 10000;
+    
+    /**
+     * 最大并发请求数
+     */
+    @Getter
+    private volatile int maxConcurrent;
+    
+    /**
+     * 最大等待请求数，小于等于 0 时不等待
+     */
+    @Getter
+    private volatile int maxQueued;
+    
+    /**
+     * 最长等待时间（毫秒）
+     */
+    @Getter
+    private volatile long maxWaitMS;
+    
+    @Getter
+    private final String configPrefix;
+    
+    private int inflight = 0;
+    private int queued = 0;
+    private long rejected = 0;
+    private volatile long refreshedAt = 0;
+    
+    public InternalRestBulkhead(int maxConcurrent, int maxQueued, long maxWaitMS) {
+        this(null, maxConcurrent, maxQueued, maxWaitMS);
+    }
+    
+    private InternalRestBulkhead(String configPrefix, int maxConcurrent, int maxQueued, long maxWaitMS) {
+        this.configPrefix = configPrefix;
+        setLimits(maxConcurrent, maxQueued, maxWaitMS);
+    }
+    
+    /**
+     * 创建从系统配置读取（并定期刷新）限制的隔离器，未配置的项使用给定的默认值。
+     *
+     * @param prefix 配置项前缀，如 system.internal.rest.user
+     */
+    public static InternalRestBulkhead fromConfig(String prefix, int maxConcurrent, int maxQueued, long maxWaitMS) {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(StringUtils.trimToNull(prefix), maxConcurrent,
+                maxQueued, maxWaitMS);
+        bulkhead.refresh();
+        return bulkhead;
+    }
+    
+    /**
+     * 调整限制，调大时等待中的请求将立即重新尝试
+     */
+    public synchronized void setLimits(int maxConcurrent, int maxQueued, long maxWaitMS) {
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.maxQueued = Math.max(maxQueued, 0);
+        this.maxWaitMS = Math.max(maxWaitMS, 0);
+        notifyAll();
+    }
+    
+    private void refresh() {
+        refreshedAt = System.currentTimeMillis();
+        if (configPrefix == null || !ContextUtil.configAccessable()) {
+            return;
+        }
+        int concurrent = CommonUtil.parseInteger(
+                ContextUtil.getConfigTrimed(configPrefix + ".bulkhead.max.concurrent"), maxConcurrent);
+        int queue = CommonUtil.parseInteger(
+                ContextUtil.getConfigTrimed(configPrefix + ".bulkhead.max.queued"), maxQueued);
+        long wait = CommonUtil.parseLong(
+                ContextUtil.getConfigTrimed(configPrefix + ".bulkhead.max.wait.ms"), maxWaitMS);
+        if (concurrent != maxConcurrent || queue != maxQueued || wait != maxWaitMS) {
+            setLimits(concurrent, queue, wait);
+        }
+    }
+    
+    /**
+     * 申请执行请求，无法执行时抛出 InternalRestBulkheadFullException。执行完成后须调用 release。
+     * 等待时间不超过当前请求截止时间的剩余时间，截止时间先到达时抛出 InternalRestDeadlineExceededException。
+     *
+     * @param url 服务标识（用于异常提示）
+     */
+    public void acquire(String url) throws InterruptedIOException {
+        if (configPrefix != null && System.currentTimeMillis() - refreshedAt >= REFRESH_INTERVAL_MS) {
+            refresh();
+        }
+        synchronized (this) {
+            if (inflight < maxConcurrent) {
+                inflight++;
+                return;
+            }
+            if (queued >= maxQueued) {
+                rejected++;
+                throw new InternalRestBulkheadFullException(url);
+            }
+            queued++;
+            try {
+                long remaining;
+                long deadline = System.currentTimeMillis() + maxWaitMS;
+                long requestRemaining = RequestDeadline.getRemainingMS();
+                boolean requestBounded = requestRemaining >= 0 && requestRemaining < maxWaitMS;
+                if (requestBounded) {
+                    deadline = System.currentTimeMillis() + requestRemaining;
+                }
+                while (inflight >= maxConcurrent) {
+                    if ((remaining = deadline - System.currentTimeMillis()) <= 0) {
+                        rejected++;
+                        if (requestBounded) {
+                            throw new InternalRestDeadlineExceededException(url);
+                        }
+                        throw new InternalRestBulkheadFullException(url);
+                    }
+                    wait(remaining);
+                }
+                inflight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.toString());
+            } finally {
+                queued--;
+            }
+        }
+    }
+    
+    public synchronized void release() {
+        if (inflight > 0) {
+            inflight--;
+        }
+        /* 唤醒全部等待者：仅唤醒一个时，被唤醒者可能恰好已超时退出，其他等待者将错过空闲的许可 */
+        notifyAll();
+    }
+    
+    /**
+     * 正在执行的请求数
+     */
+    public synchronized int getInflight() {
+        return inflight;
+    }
+    
+    /**
+     * 正在等待的请求数
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+    
+    /**
+     * 被拒绝的请求数
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+}
@@ -0,0 +1,273 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 内部服务的熔断器（按服务根路径区分）。
+ *
+ * 统计最近 windowSize 次请求，当请求数不少于 minimumCalls 且失败（含慢请求）比例达到
+ * failureRateThreshold 时熔断（OPEN），熔断期间请求直接失败；熔断 openDurationMS 后进入
+ * 半开状态（HALF_OPEN），仅放行一个探测请求，成功则恢复（CLOSED），否则继续熔断。
+ *
+ * 每次请求须先通过 tryAcquire 获取许可，完成后以该许可调用 record（被主动中止时调用 release）；
+ * 只有探测请求的许可能够决定半开状态的去向，熔断前已发出、在半开期间才完成的请求不影响状态转换。
+ *
+ * 同时根据最近请求的耗时百分位计算自适应超时时间，以配置的超时时间为上限。
+ */
+@Slf4j
+public class InternalRestCircuitBreaker {
+    
+    public static enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+    
+    /**
+     * 请求许可，半开状态下的探测请求持有独立的许可
+     */
+    public static final class Permit {
+        private Permit() {
+        }
+    }
+    
+    private final static Permit PASSING = new Permit();
+    
+    private final static ConcurrentMap<String, InternalRestCircuitBreaker> REGISTRY
+                    = new ConcurrentHashMap<String, InternalRestCircuitBreaker>();
+    
+    /**
+     * 获取指定服务根路径的熔断器，不存在时创建
+     */
+    public static InternalRestCircuitBreaker get(String url) {
+        InternalRestCircuitBreaker breaker;
+        if ((breaker = REGISTRY.get(url)) == null) {
+            InternalRestCircuitBreaker exists;
+            breaker = new InternalRestCircuitBreaker(url);
+            if ((exists = REGISTRY.putIfAbsent(url, breaker)) != null) {
+                breaker = exists;
+            }
+        }
+        return breaker;
+    }
+    
+    /**
+     * 获取所有熔断器的当前状态，用于确认哪些依赖服务已熔断
+     */
+    public static Map<String, State> getStates() {
+        Map<String, State> states = new HashMap<String, State>();
+        for (InternalRestCircuitBreaker breaker : REGISTRY.values()) {
+            states.put(breaker.getUrl(), breaker.getState());
+        }
+        return Collections.unmodifiableMap(states);
+    }
+    
+    @Getter
+    private final String url;
+    
+    @Getter
+    @Setter
+    private volatile int minimumCalls = 20;
+    
+    @Getter
+    @Setter
+    private volatile double failureRateThreshold = 0.5;
+    
+    /**
+     * 慢请求的耗时阈值（毫秒），超过阈值的请求视为失败，小于等于 0 时不统计慢请求
+     */
+    @Getter
+    @Setter
+    private volatile long slowCallMS = 10000;
+    
+    @Getter
+    @Setter
+    private volatile long openDurationMS = 30000;
+    
+    /**
+     * 自适应超时：取最近请求耗时的 percentile 百分位乘以 multiplier，且不低于 minimumMS
+     */
+    @Getter
+    @Setter
+    private volatile double adaptiveTimeoutPercentile = 0.99;
+    
+    @Getter
+    @Setter
+    private volatile double adaptiveTimeoutMultiplier = 3;
+    
+    @Getter
+    @Setter
+    private volatile int adaptiveTimeoutMinimumMS = 1000;
+    
+    @Getter
+    private volatile State state = State.CLOSED;
+    
+    @Getter
+    private volatile int adaptiveTimeoutMS = 0;
+    
+    private volatile long openUntil = 0;
+    private Permit probe = null;
+    private int cursor = 0;
+    private int recorded = 0;
+    private final boolean[] failures;
+    private final long[] latencies;
+    
+    private InternalRestCircuitBreaker(String url) {
+        this(url, 100);
+    }
+    
+    private InternalRestCircuitBreaker(String url, int windowSize) {
+        this.url = url;
+        this.failures = new boolean[windowSize];
+        this.latencies = new long[windowSize];
+    }
+    
+    /**
+     * 获取请求许可，不允许发送请求时返回 null。半开状态下仅允许一个探测请求。
+     */
+    public synchronized Permit tryAcquire() {
+        if (State.CLOSED.equals(state)) {
+            return PASSING;
+        }
+        if (State.OPEN.equals(state)) {
+            if (System.currentTimeMillis() < openUntil) {
+                return null;
+            }
+            transit(State.HALF_OPEN);
+        }
+        if (probe != null) {
+            return null;
+        }
+        return probe = new Permit();
+    }
+    
+    /**
+     * 记录请求结果
+     *
+     * @param permit    请求时获取的许可
+     * @param failed    请求是否失败（网络异常或服务端错误）
+     * @param latencyMS 请求耗时
+     */
+    public synchronized void record(Permit permit, boolean failed, long latencyMS) {
+        record(permit, failed, latencyMS, true);
+    }
+    
+    /**
+     * 记录请求结果
+     *
+     * @param permit    请求时获取的许可
+     * @param failed    请求是否失败（网络异常或服务端错误）
+     * @param latencyMS 请求耗时
+     * @param timed     是否统计耗时。上传、下载等耗时取决于数据量的请求应为 false，此时既不判定慢请求，
+     *                  也不参与自适应超时的计算，仅统计是否失败
+     */
+    public synchronized void record(Permit permit, boolean failed, long latencyMS, boolean timed) {
+        failed = failed || (timed && slowCallMS > 0 && latencyMS >= slowCallMS);
+        if (permit != null && permit == probe) {
+            probe = null;
+            if (failed) {
+                open();
+                return;
+            }
+            reset();
+            transit(State.CLOSED);
+        } else if (!State.CLOSED.equals(state)) {
+            /* 熔断前发出的请求，其结果不影响熔断状态 */
+            return;
+        }
+        failures[cursor] = failed;
+        latencies[cursor] = timed ? latencyMS : -1;
+        cursor = (cursor + 1) % failures.length;
+        if (recorded < failures.length) {
+            recorded++;
+        }
+        if (cursor % 10 == 0) {
+            adaptiveTimeoutMS = computeAdaptiveTimeout();
+        }
+        if (State.CLOSED.equals(state) && recorded >= minimumCalls) {
+            int failedCount = 0;
+            for (int i = 0; i < recorded; i++) {
+                if (failures[i]) {
+                    failedCount++;
+                }
+            }
+            if (failedCount >= recorded * failureRateThreshold) {
+                open();
+            }
+        }
+    }
+    
+    /**
+     * 归还许可而不记录结果，用于被主动中止（如对冲请求中的落后者）的请求。归还探测许可后
+     * 仍保持半开状态，由下一个请求重新探测。
+     */
+    public synchronized void release(Permit permit) {
+        if (permit != null && permit == probe) {
+            probe = null;
+        }
+    }
+    
+    /**
+     * 获取本次请求的超时时间：在统计样本足够时使用自适应超时，并以 maxTimeoutMS 为上限。
+     */
+    public int getTimeout(int maxTimeoutMS) {
+        int adaptive;
+        if ((adaptive = adaptiveTimeoutMS) <= 0 || (maxTimeoutMS > 0 && adaptive >= maxTimeoutMS)) {
+            return maxTimeoutMS;
+        }
+        return adaptive;
+    }
+    
+    /**
+     * 获取最近请求耗时的百分位值（不含未统计耗时的请求），统计样本不足时返回 0
+     */
+    public synchronized long getLatencyPercentile(double percentile) {
+        int count = 0;
+        long[] sorted = new long[recorded];
+        for (int i = 0; i < recorded; i++) {
+            if (latencies[i] >= 0) {
+                sorted[count++] = latencies[i];
+            }
+        }
+        if (count < minimumCalls) {
+            return 0;
+        }
+        Arrays.sort(sorted, 0, count);
+        int index = (int) Math.min(count - 1, Math.ceil(count * percentile) - 1);
+        return sorted[Math.max(index, 0)];
+    }
+    
+    private int computeAdaptiveTimeout() {
+        long timeout;
+        if ((timeout = getLatencyPercentile(adaptiveTimeoutPercentile)) <= 0) {
+            return 0;
+        }
+        timeout = (long) (timeout * adaptiveTimeoutMultiplier);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(timeout, adaptiveTimeoutMinimumMS));
+    }
+    
+    private void open() {
+        openUntil = System.currentTimeMillis() + openDurationMS;
+        transit(State.OPEN);
+    }
+    
+    private void reset() {
+        cursor = 0;
+        recorded = 0;
+        Arrays.fill(failures, false);
+    }
+    
+    private void transit(State target) {
+        if (!target.equals(state)) {
+            log.warn("Circuit breaker of {} changed : {} => {}", url, state, target);
+            state = target;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.util.Arrays;
+
+/**
+ * 最近若干次请求的耗时，用于计算对冲请求的等待时间。
+ *
+ * 与熔断器的统计相互独立，不受是否启用熔断的影响。
+ */
+class InternalRestLatencyWindow {
+    
+    private final int minimumSamples;
+    private final long[] latencies;
+    private int cursor = 0;
+    private int recorded = 0;
+    
+    InternalRestLatencyWindow(int windowSize, int minimumSamples) {
+        this.latencies = new long[Math.max(windowSize, 1)];
+        this.minimumSamples = Math.max(minimumSamples, 1);
+    }
+    
+    synchronized void record(long latencyMS) {
+        latencies[cursor] = latencyMS;
+        cursor = (cursor + 1) % latencies.length;
+        if (recorded < latencies.length) {
+            recorded++;
+        }
+    }
+    
+    /**
+     * 获取最近请求耗时的百分位值，统计样本不足时返回 0
+     */
+    synchronized long getPercentile(double percentile) {
+        if (recorded < minimumSamples) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, recorded);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(recorded - 1, Math.ceil(recorded * percentile) - 1);
+        return sorted[Math.max(index, 0)];
+    }
+}
@@ -0,0 +1,218 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import com.socyno.base.bscmixutil.StringUtils;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * 内部服务请求指标的默认实现：按服务根路径及规范化的请求路径模板，统计请求耗时分布
+ * （p50/p90/p99/max）、请求及响应的字节数、各类响应码的数量及业务错误数。
+ *
+ * 请求路径中的数字、UUID 等标识段将被替换为 {id}。原始路径通常含有标识，数量不可控，
+ * 因此每次记录时重新规范化而不缓存原始路径。
+ *
+ * 为限制内存占用，统计的 (服务根路径, 路径模板) 组合数有上限，超出上限后新出现的路径
+ * 模板统一计入 &lt;other&gt; 模板，已统计的模板不受影响。
+ */
+public class InternalRestMetrics implements InternalRestMetricsSink {
+    
+    @Getter
+    private final static InternalRestMetrics Default = new InternalRestMetrics();
+    
+    private final static int MAX_ENDPOINTS = 2000;
+    
+    private final static String OTHER_TEMPLATE = "<other>";
+    
+    private final static Pattern REGEXP_ID_SEGMENT = Pattern.compile(
+            "^(\\d+|[0-9a-f]{8}-?[0-9a-f]{4}-?[0-9a-f]{4}-?[0-9a-f]{4}-?[0-9a-f]{12}|[0-9a-f]{24,})$",
+            Pattern.CASE_INSENSITIVE);
+    
+    /**
+     * 耗时分布的桶：16 毫秒以内每毫秒一个桶，之后每个 2 的幂区间再均分为 8 个桶
+     */
+    private final static int LINEAR_BUCKETS = 16;
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int BUCKETS = LINEAR_BUCKETS + (63 - 4) * (1 << SUB_BUCKET_BITS);
+    
+    private final ConcurrentMap<String, ConcurrentMap<String, Endpoint>> endpoints
+                    = new ConcurrentHashMap<String, ConcurrentMap<String, Endpoint>>();
+    
+    private final AtomicInteger endpointCount = new AtomicInteger();
+    
+    private static class Endpoint {
+        private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray statuses = new AtomicLongArray(6);
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder messageErrors = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final AtomicLong maxLatency = new AtomicLong();
+    }
+    
+    @Data
+    @Accessors(chain = true)
+    public static class Snapshot {
+        private String url;
+        private String path;
+        private long requests;
+        private long messageErrors;
+        private long requestBytes;
+        private long responseBytes;
+        private long p50;
+        private long p90;
+        private long p99;
+        private long max;
+        /**
+         * 按响应码分类的请求数，下标 0 为未收到响应，1 - 5 分别为 1xx - 5xx
+         */
+        private long[] statuses;
+    }
+    
+    @Override
+    public void record(String url, String path, int statusCode, long latencyMS, long requestBytes,
+            long responseBytes, boolean messageError) {
+        Endpoint endpoint = getEndpoint(url, getPathTemplate(path));
+        endpoint.requests.increment();
+        endpoint.latencies.incrementAndGet(toBucket(latencyMS));
+        endpoint.statuses.incrementAndGet(statusCode >= 100 && statusCode < 600 ? statusCode / 100 : 0);
+        if (messageError) {
+            endpoint.messageErrors.increment();
+        }
+        if (requestBytes > 0) {
+            endpoint.requestBytes.add(requestBytes);
+        }
+        if (responseBytes > 0) {
+            endpoint.responseBytes.add(responseBytes);
+        }
+        long max;
+        while (latencyMS > (max = endpoint.maxLatency.get())
+                && !endpoint.maxLatency.compareAndSet(max, latencyMS)) {
+            continue;
+        }
+    }
+    
+    /**
+     * 获取当前所有请求路径的指标快照
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>();
+        for (Map.Entry<String, ConcurrentMap<String, Endpoint>> service : endpoints.entrySet()) {
+            for (Map.Entry<String, Endpoint> e : service.getValue().entrySet()) {
+                Endpoint endpoint = e.getValue();
+                long[] buckets = new long[BUCKETS];
+                long total = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    total += (buckets[i] = endpoint.latencies.get(i));
+                }
+                long[] statuses = new long[endpoint.statuses.length()];
+                for (int i = 0; i < statuses.length; i++) {
+                    statuses[i] = endpoint.statuses.get(i);
+                }
+                snapshots.add(new Snapshot().setUrl(service.getKey()).setPath(e.getKey())
+                        .setRequests(endpoint.requests.sum()).setMessageErrors(endpoint.messageErrors.sum())
+                        .setRequestBytes(endpoint.requestBytes.sum())
+                        .setResponseBytes(endpoint.responseBytes.sum())
+                        .setP50(percentile(buckets, total, 0.5)).setP90(percentile(buckets, total, 0.9))
+                        .setP99(percentile(buckets, total, 0.99)).setMax(endpoint.maxLatency.get())
+                        .setStatuses(statuses));
+            }
+        }
+        return snapshots;
+    }
+    
+    public void clear() {
+        endpoints.clear();
+        endpointCount.set(0);
+    }
+    
+    private Endpoint getEndpoint(String url, String template) {
+        ConcurrentMap<String, Endpoint> service;
+        if ((service = endpoints.get(url)) == null) {
+            ConcurrentMap<String, Endpoint> exists;
+            service = new ConcurrentHashMap<String, Endpoint>();
+            if ((exists = endpoints.putIfAbsent(url, service)) != null) {
+                service = exists;
+            }
+        }
+        Endpoint endpoint;
+        if ((endpoint = service.get(template)) == null) {
+            if (endpointCount.get() >= MAX_ENDPOINTS && !OTHER_TEMPLATE.equals(template)) {
+                return getEndpoint(url, OTHER_TEMPLATE);
+            }
+            Endpoint exists;
+            endpoint = new Endpoint();
+            if ((exists = service.putIfAbsent(template, endpoint)) != null) {
+                endpoint = exists;
+            } else {
+                endpointCount.incrementAndGet();
+            }
+        }
+        return endpoint;
+    }
+    
+    /**
+     * 请求路径规范化：移除查询参数，并将标识段替换为 {id}
+     */
+    String getPathTemplate(String path) {
+        if (path == null) {
+            return "/";
+        }
+        StringBuilder normalized = new StringBuilder();
+        int queryIndex = path.indexOf('?');
+        for (String segment : (queryIndex < 0 ? path : path.substring(0, queryIndex)).split("/")) {
+            if (StringUtils.isBlank(segment)) {
+                continue;
+            }
+            normalized.append('/').append(REGEXP_ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+        }
+        return normalized.length() <= 0 ? "/" : normalized.toString();
+    }
+    
+    private static int toBucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return Math.min(BUCKETS - 1, LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + sub);
+    }
+    
+    /**
+     * 桶的上限值（用于估算百分位）
+     */
+    private static long fromBucket(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = ((bucket - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 4;
+        int sub = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+    
+    private static long percentile(long[] buckets, long total, double percentile) {
+        if (total <= 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile);
+        long accumulated = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if ((accumulated += buckets[i]) >= threshold) {
+                return fromBucket(i);
+            }
+        }
+        return fromBucket(buckets.length - 1);
+    }
+}
@@ -0,0 +1,21 @@
+package com.socyno.webbsc.ctxsrv;
+
+/**
+ * 内部服务请求的指标接收器。
+ * 
+ * 每次请求完成时调用，实现时应避免在此方法中分配对象或执行耗时操作。
+ */
+public interface InternalRestMetricsSink {
+    
+    /**
+     * @param url           服务根路径
+     * @param path          请求的相对路径（未规范化）
+     * @param statusCode    HTTP 响应码，未收到响应时为 0
+     * @param latencyMS     请求耗时
+     * @param requestBytes  请求体的字节数
+     * @param responseBytes 响应体的字节数（未知时为 -1）
+     * @param messageError  是否返回了业务错误（MessageException）
+     */
+    public void record(String url, String path, int statusCode, long latencyMS, long requestBytes,
+            long responseBytes, boolean messageError);
+}
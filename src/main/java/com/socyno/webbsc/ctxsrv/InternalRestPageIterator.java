@@ -0,0 +1,137 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lombok.Getter;
+
+/**
+ * 分页列表的惰性迭代器：仅在当前页的数据消费完后才获取下一页，内存中最多同时保留当前页
+ * 及预取的下一页。启用预取时，在消费当前页的同时异步获取下一页。
+ *
+ * 获取的页面数据少于页大小（或为空）时视为最后一页。请求失败时，next/hasNext 抛出
+ * UncheckedIOException。提前结束遍历时请调用 close 以取消预取。
+ */
+public abstract class InternalRestPageIterator<T> implements Iterator<T>, AutoCloseable {
+    
+    @Getter
+    private final int pageSize;
+    
+    @Getter
+    private final boolean prefetch;
+    
+    /**
+     * 已获取的页数
+     */
+    @Getter
+    private int pages = 0;
+    
+    private int nextPage;
+    private boolean lastPage = false;
+    private boolean closed = false;
+    private Iterator<?> current = null;
+    private CompletableFuture<List<?>> prefetched = null;
+    
+    /**
+     * @param firstPage 首页的页码
+     * @param pageSize  页大小
+     * @param prefetch  是否异步预取下一页
+     */
+    protected InternalRestPageIterator(int firstPage, int pageSize, boolean prefetch) {
+        this.nextPage = firstPage;
+        this.pageSize = Math.max(pageSize, 1);
+        this.prefetch = prefetch;
+    }
+    
+    /**
+     * 获取指定页的数据
+     */
+    protected abstract List<?> loadPage(int page, int pageSize) throws IOException;
+    
+    /**
+     * 异步获取指定页的数据。返回结果被取消（close）时，实现应中止正在执行的请求。
+     */
+    protected abstract CompletableFuture<List<?>> loadPageAsync(int page, int pageSize);
+    
+    /**
+     * 将页面中的原始数据转换为目标类型
+     */
+    protected abstract T convert(Object item);
+    
+    @Override
+    public synchronized boolean hasNext() {
+        while (!closed && (current == null || !current.hasNext())) {
+            if (lastPage) {
+                return false;
+            }
+            fetchNextPage();
+        }
+        return !closed;
+    }
+    
+    @Override
+    public synchronized T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return convert(current.next());
+    }
+    
+    private void fetchNextPage() {
+        List<?> items;
+        try {
+            if (prefetched != null) {
+                CompletableFuture<List<?>> future = prefetched;
+                prefetched = null;
+                items = AbstractInternalRestService.awaitResult(future);
+            } else {
+                items = loadPage(nextPage, pageSize);
+            }
+        } catch (IOException e) {
+            lastPage = true;
+            throw new UncheckedIOException(e);
+        }
+        pages++;
+        nextPage++;
+        current = items == null ? null : items.iterator();
+        if (items == null || items.size() < pageSize) {
+            lastPage = true;
+        } else if (prefetch) {
+            prefetched = loadPageAsync(nextPage, pageSize);
+        }
+    }
+    
+    /**
+     * 结束遍历并取消尚未完成的预取
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        current = null;
+        if (prefetched != null) {
+            prefetched.cancel(true);
+            prefetched = null;
+        }
+    }
+    
+    /**
+     * 转换为顺序流，流关闭时结束遍历
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        close();
+                    }
+                });
+    }
+}
@@ -0,0 +1,222 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+
+import com.socyno.base.bscmixutil.CommonUtil;
+import com.socyno.base.bscmixutil.StringUtils;
+import com.socyno.base.bscmodel.SessionContext;
+import com.socyno.base.bscservice.HttpUtil;
+
+import lombok.Getter;
+
+/**
+ * 内部服务 GET 请求的响应缓存（LRU 淘汰，缓存解析后的响应对象）。
+ *
+ * 缓存有效期优先使用响应头 Cache-Control 的 max-age，否则使用默认的 ttlMS；
+ * 响应头为 no-store 时不缓存，为 no-cache 时每次使用前都需重新验证。过期的条目
+ * 如带有 ETag，将通过 If-None-Match 请求重新验证，服务端返回 304 时继续使用。
+ * 仅缓存解析后状态码为 0（成功）的响应。
+ *
+ * 缓存按当前会话的用户（含代理用户）区分，不同用户之间不共享缓存条目。
+ *
+ * 注意：缓存的对象在调用方之间共享，调用方不可修改其内容。
+ */
+public class InternalRestResponseCache {
+    
+    private final static Pattern REGEXP_MAX_AGE = Pattern.compile("max-age\\s*=\\s*\"?(\\d+)",
+            Pattern.CASE_INSENSITIVE);
+    
+    @Getter
+    private final int maxEntries;
+    
+    @Getter
+    private final long ttlMS;
+    
+    /**
+     * 参与缓存键计算的请求头
+     */
+    @Getter
+    private final List<String> varyHeaders;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    private final Map<String, CachedResponse> entries;
+    
+    static class CachedResponse {
+        private final Object value;
+        private final String etag;
+        private volatile long expiresAt;
+        
+        private CachedResponse(Object value, String etag, long expiresAt) {
+            this.value = value;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+        }
+        
+        Object getValue() {
+            return value;
+        }
+        
+        String getEtag() {
+            return etag;
+        }
+        
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+    
+    /**
+     * @param maxEntries  最大缓存条目数，超出时淘汰最久未使用的条目
+     * @param ttlMS       默认缓存有效期（毫秒），响应未指定 max-age 时使用
+     * @param varyHeaders 参与缓存键计算的请求头（如令牌头，避免不同用户共享缓存）
+     */
+    @SuppressWarnings("serial")
+    public InternalRestResponseCache(int maxEntries, long ttlMS, String... varyHeaders) {
+        this.ttlMS = CommonUtil.parseMaximalLong(ttlMS, 0);
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.varyHeaders = varyHeaders == null ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(Arrays.asList(varyHeaders));
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > InternalRestResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * 生成缓存键：完整请求地址 + 排序后的查询参数 + 当前会话用户 + 指定的请求头 + 响应的解析方式
+     */
+    String toKey(String fullUrl, Map<String, Object> query, Map<String, Object> headers, String decodeKey) {
+        return toKey(fullUrl, query, headers, decodeKey, SessionContext.hasUserSession()
+                ? String.format("%s/%s", SessionContext.getUsername(), SessionContext.getProxyUsername()) : null);
+    }
+    
+    /**
+     * @param sessionUser 当前会话的用户（含代理用户），无会话时为空
+     */
+    String toKey(String fullUrl, Map<String, Object> query, Map<String, Object> headers, String decodeKey,
+            String sessionUser) {
+        StringBuilder key = new StringBuilder(fullUrl);
+        if (query != null && !query.isEmpty()) {
+            key.append('?').append(HttpUtil.toQueryString(new TreeMap<String, Object>(query)));
+        }
+        if (sessionUser != null) {
+            key.append("\n@").append(sessionUser);
+        }
+        for (String name : varyHeaders) {
+            key.append('\n').append(name).append(':')
+                    .append(headers == null ? null : headers.get(name));
+        }
+        return key.append('\n').append(decodeKey).toString();
+    }
+    
+    /**
+     * 查找缓存条目（包括已过期但可重新验证的条目），并记录命中情况
+     */
+    CachedResponse lookup(String key) {
+        CachedResponse entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.isFresh()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+    
+    /**
+     * 缓存响应结果，响应禁止缓存时忽略
+     */
+    void store(String key, Object value, HttpResponse response) {
+        String cacheControl = getHeader(response, "Cache-Control");
+        if (StringUtils.containsIgnoreCase(cacheControl, "no-store")) {
+            return;
+        }
+        String etag = getHeader(response, "ETag");
+        long expiresAt = parseExpiresAt(cacheControl);
+        if (expiresAt <= System.currentTimeMillis() && StringUtils.isBlank(etag)) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new CachedResponse(value, etag, expiresAt));
+        }
+    }
+    
+    /**
+     * 服务端确认缓存内容未变更（304），延长条目的有效期
+     */
+    void revalidated(CachedResponse entry, HttpResponse response) {
+        revalidations.incrementAndGet();
+        entry.expiresAt = parseExpiresAt(getHeader(response, "Cache-Control"));
+    }
+    
+    private long parseExpiresAt(String cacheControl) {
+        long now = System.currentTimeMillis();
+        if (StringUtils.containsIgnoreCase(cacheControl, "no-cache")) {
+            return now;
+        }
+        Matcher matcher;
+        if (cacheControl != null && (matcher = REGEXP_MAX_AGE.matcher(cacheControl)).find()) {
+            return now + CommonUtil.parseLong(matcher.group(1), 0) * 1000L;
+        }
+        return now + ttlMS;
+    }
+    
+    private static String getHeader(HttpResponse response, String name) {
+        Header header;
+        if (response == null || (header = response.getFirstHeader(name)) == null) {
+            return null;
+        }
+        return header.getValue();
+    }
+    
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    public long getHitCount() {
+        return hits.get();
+    }
+    
+    public long getMissCount() {
+        return misses.get();
+    }
+    
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+    
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+}
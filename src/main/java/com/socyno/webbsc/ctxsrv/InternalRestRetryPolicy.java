@@ -0,0 +1,107 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * 内部服务幂等请求的重试策略。
+ *
+ * 仅在网络异常（连接失败、超时等 IOException）时重试，重试间隔按指数退避并叠加随机抖动；
+ * 重试预算限制重试（含对冲请求）数量不超过正常请求数的 budgetRatio 倍，避免在依赖服务
+ * 故障时成倍放大请求量。
+ *
+ * 启用对冲（hedging）时，如首次请求在近期耗时的 hedgingPercentile 百分位内未返回，将再发出
+ * 一个相同的请求，以先返回的结果为准。
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class InternalRestRetryPolicy {
+    
+    /**
+     * 最大尝试次数（含首次请求）
+     */
+    private int maxAttempts = 3;
+    
+    private long initialBackoffMS = 100;
+    
+    private long maxBackoffMS = 2000;
+    
+    private double backoffMultiplier = 2;
+    
+    /**
+     * 超时异常是否重试。超时的请求可能已在服务端执行，默认仍然重试（仅用于幂等请求）。
+     */
+    private boolean retryOnTimeout = true;
+    
+    /**
+     * 重试预算：每个正常请求可积累的重试次数，及最多可积累的重试次数（初始即为最大值）
+     */
+    private double budgetRatio = 0.2;
+    
+    private double budgetMaxTokens = 10;
+    
+    private boolean hedging = false;
+    
+    private double hedgingPercentile = 0.95;
+    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double budgetTokens = 10;
+    
+    /**
+     * 设置最多可积累的重试次数：已积累满时随之调整，否则以此为上限
+     */
+    public synchronized InternalRestRetryPolicy setBudgetMaxTokens(double budgetMaxTokens) {
+        budgetTokens = budgetTokens >= this.budgetMaxTokens ? budgetMaxTokens
+                : Math.min(budgetTokens, budgetMaxTokens);
+        this.budgetMaxTokens = budgetMaxTokens;
+        return this;
+    }
+    
+    /**
+     * 记录一次正常请求，积累重试预算
+     */
+    synchronized void onRequest() {
+        budgetTokens = Math.min(budgetMaxTokens, budgetTokens + budgetRatio);
+    }
+    
+    /**
+     * 申请一次重试（或对冲请求）的预算
+     */
+    synchronized boolean tryAcquireRetry() {
+        if (budgetTokens < 1) {
+            return false;
+        }
+        budgetTokens -= 1;
+        return true;
+    }
+    
+    boolean isRetryable(IOException e) {
+        if (e instanceof SocketTimeoutException) {
+            return retryOnTimeout;
+        }
+        if (e instanceof ConnectTimeoutException) {
+            return true;
+        }
+        return !(e instanceof InterruptedIOException) && !Thread.currentThread().isInterrupted();
+    }
+    
+    /**
+     * 获取第 attempt 次请求失败后的等待时间（full jitter）
+     */
+    long getBackoffMS(int attempt) {
+        double backoff = initialBackoffMS * Math.pow(backoffMultiplier, Math.max(attempt - 1, 0));
+        long limit = (long) Math.min(maxBackoffMS, backoff);
+        return limit <= 0 ? 0 : ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+}
@@ -1,16 +1,78 @@
 package com.socyno.webbsc.ctxutil;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
 import com.socyno.base.bscmixutil.StringUtils;
 import com.socyno.base.bscmodel.SessionContext;
 import com.socyno.base.bscservice.HttpUtil;
 
 import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 public class ContextHttpClient extends HttpUtil {
     
     @Getter
 	private final static ContextHttpClient Default = new ContextHttpClient();
 
+	/**
+	 * 连接池配置
+	 */
+	@Getter
+	private final ContextHttpPoolConfig poolConfig;
+
+	/**
+	 * 是否为独立的连接池：是则所有请求均通过本连接池发送，否则仅流式请求体使用本连接池
+	 */
+	@Getter
+	private final boolean dedicated;
+
+	private final AtomicLong leases = new AtomicLong();
+	private final AtomicLong leaseTimeouts = new AtomicLong();
+	private final AtomicLong leaseWaitNanos = new AtomicLong();
+
+	private volatile PoolingHttpClientConnectionManager connectionManager;
+
+	private volatile CloseableHttpClient pooledClient;
+
+	public ContextHttpClient() {
+		this.poolConfig = new ContextHttpPoolConfig();
+		this.dedicated = false;
+	}
+
+	/**
+	 * 创建使用独立连接池的客户端，避免不同依赖服务之间争用连接
+	 */
+	public ContextHttpClient(@NonNull ContextHttpPoolConfig poolConfig) {
+		this.poolConfig = poolConfig;
+		this.dedicated = true;
+	}
+
 	@Override
 	public String getLogUsername() {
 		String username = null;
@@ -29,4 +91,181 @@ public class ContextHttpClient extends HttpUtil {
 		return ContextUtil.replaceSensitive(logmesg);
 	}
 
+	/**
+	 * 独立的连接池时，通过本连接池发送请求，否则沿用 HttpUtil 的默认实现。
+	 */
+	@Override
+	public CloseableHttpResponse request(String url, String method, Map<String, Object> query,
+			Map<String, Object> headers, byte[] body, int timeoutMS) throws IOException {
+		if (!dedicated) {
+			return super.request(url, method, query, headers, body, timeoutMS);
+		}
+		return request(url, method, query, headers, body == null ? null : new ByteArrayEntity(body), timeoutMS);
+	}
+
+	/**
+	 * 以给定的请求体对象发送请求，请求体在发送时直接写入连接（如 StreamingJsonEntity）。
+	 *
+	 * @param url       请求地址
+	 * @param method    请求方式
+	 * @param query     请求URL参数
+	 * @param headers   请求头
+	 * @param entity    请求体
+	 * @param timeoutMS 连接及响应超时
+	 */
+	public CloseableHttpResponse request(String url, String method, Map<String, Object> query,
+			Map<String, Object> headers, HttpEntity entity, int timeoutMS) throws IOException {
+		return execute(newRequest(url, method, query, headers, entity, timeoutMS));
+	}
+
+	/**
+	 * 创建通过本连接池发送的请求（参数同上），发送过程中可通过其 abort 方法中止请求。
+	 */
+	public HttpUriRequest newRequest(String url, String method, Map<String, Object> query,
+			Map<String, Object> headers, HttpEntity entity, int timeoutMS) {
+		if (query != null && !query.isEmpty()) {
+			url = String.format("%s%s%s", url, url.indexOf('?') < 0 ? "?" : "&", toQueryString(query));
+		}
+		RequestBuilder builder = RequestBuilder.create(StringUtils.ifBlank(method, "GET").toUpperCase())
+				.setUri(url).setEntity(entity)
+				.setConfig(RequestConfig.custom()
+						.setConnectTimeout(toTimeout(poolConfig.getConnectTimeoutMS(), timeoutMS))
+						.setSocketTimeout(toTimeout(poolConfig.getReadTimeoutMS(), timeoutMS))
+						.setConnectionRequestTimeout(toTimeout(poolConfig.getLeaseTimeoutMS(), timeoutMS))
+						.build());
+		if (headers != null) {
+			for (Map.Entry<String, Object> header : headers.entrySet()) {
+				if (header.getKey() != null && header.getValue() != null) {
+					builder.setHeader(header.getKey(), header.getValue().toString());
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 连接池配置的超时与本次请求的超时（含截止时间的剩余时间）取较小者，小于等于 0 时视为不限制
+	 */
+	static int toTimeout(int configuredMS, int timeoutMS) {
+		if (configuredMS <= 0) {
+			return timeoutMS;
+		}
+		return timeoutMS > 0 ? Math.min(configuredMS, timeoutMS) : configuredMS;
+	}
+
+	/**
+	 * 通过本连接池发送请求
+	 */
+	public CloseableHttpResponse execute(@NonNull HttpUriRequest request) throws IOException {
+		log.info("{} {} by {}", request.getMethod(), replaceLogSensitive(request.getURI().toString()),
+				getLogUsername());
+		return getPooledClient().execute(request);
+	}
+
+	protected CloseableHttpClient getPooledClient() {
+		CloseableHttpClient client;
+		if ((client = pooledClient) == null) {
+			synchronized (this) {
+				if ((client = pooledClient) == null) {
+					PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager() {
+						@Override
+						public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+							final ConnectionRequest request = super.requestConnection(route, state);
+							return new ConnectionRequest() {
+								@Override
+								public HttpClientConnection get(long timeout, TimeUnit unit)
+										throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+									long started = System.nanoTime();
+									try {
+										return request.get(timeout, unit);
+									} catch (ConnectionPoolTimeoutException e) {
+										leaseTimeouts.incrementAndGet();
+										throw e;
+									} finally {
+										leases.incrementAndGet();
+										leaseWaitNanos.addAndGet(System.nanoTime() - started);
+									}
+								}
+
+								@Override
+								public boolean cancel() {
+									return request.cancel();
+								}
+							};
+						}
+					};
+					manager.setMaxTotal(Math.max(poolConfig.getMaxTotal(), 1));
+					manager.setDefaultMaxPerRoute(Math.max(poolConfig.getMaxPerRoute(), 1));
+					final long keepAliveMS = poolConfig.getKeepAliveMS();
+					/* 响应解压及失败重试由调用方控制 */
+					HttpClientBuilder builder = HttpClients.custom().setConnectionManager(manager)
+							.disableContentCompression().disableAutomaticRetries()
+							.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+								@Override
+								public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+									long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+											.getKeepAliveDuration(response, context);
+									if (keepAliveMS <= 0) {
+										return duration;
+									}
+									return duration > 0 ? Math.min(duration, keepAliveMS) : keepAliveMS;
+								}
+							});
+					if (poolConfig.getIdleEvictMS() > 0) {
+						builder.evictExpiredConnections().evictIdleConnections(poolConfig.getIdleEvictMS(),
+								TimeUnit.MILLISECONDS);
+					}
+					connectionManager = manager;
+					client = pooledClient = builder.build();
+				}
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * 连接池的当前状态：已租用(leased)、等待中(pending)、空闲(available)及上限(max)的连接数，
+	 * 连接池尚未创建时返回空。
+	 */
+	public PoolStats getPoolStats() {
+		PoolingHttpClientConnectionManager manager;
+		if ((manager = connectionManager) == null) {
+			return null;
+		}
+		return manager.getTotalStats();
+	}
+
+	/**
+	 * 从连接池获取连接的次数
+	 */
+	public long getLeaseCount() {
+		return leases.get();
+	}
+
+	/**
+	 * 从连接池获取连接的累计等待时间（毫秒）
+	 */
+	public long getLeaseWaitMS() {
+		return TimeUnit.NANOSECONDS.toMillis(leaseWaitNanos.get());
+	}
+
+	/**
+	 * 等待连接超时（连接池耗尽）的请求数
+	 */
+	public long getLeaseTimeoutCount() {
+		return leaseTimeouts.get();
+	}
+
+	/**
+	 * 关闭连接池（如连接池已创建）
+	 */
+	public synchronized void shutdown() throws IOException {
+		CloseableHttpClient client;
+		if ((client = pooledClient) != null) {
+			pooledClient = null;
+			connectionManager = null;
+			client.close();
+		}
+	}
+
 }
@@ -0,0 +1,81 @@
+package com.socyno.webbsc.ctxutil;
+
+import com.socyno.base.bscmixutil.CommonUtil;
+import com.socyno.base.bscmixutil.StringUtils;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * HTTP 连接池配置。超时时间小于等于 0 时使用请求时指定的超时时间。
+ */
+@Getter
+@Setter
+@ToString
+@Accessors(chain = true)
+public class ContextHttpPoolConfig {
+    
+    private int maxTotal = 200;
+    
+    private int maxPerRoute = 50;
+    
+    /**
+     * 空闲连接的回收时间（毫秒），小于等于 0 时不回收
+     */
+    private long idleEvictMS = 60000;
+    
+    /**
+     * 连接保持时间（毫秒）的上限，服务端通过 Keep-Alive 响应头指定更短的时间时以服务端为准
+     */
+    private long keepAliveMS = 30000;
+    
+    /**
+     * 连接及读取超时（毫秒）的上限，请求的超时时间更短时以请求为准，小于等于 0 时仅使用请求的超时时间
+     */
+    private int connectTimeoutMS = 0;
+    
+    private int readTimeoutMS = 0;
+    
+    /**
+     * 从连接池获取连接的最长等待时间（毫秒），同样以请求的超时时间为上限
+     */
+    private int leaseTimeoutMS = 0;
+    
+    /**
+     * 从系统配置中读取连接池配置，未配置的项使用默认值。配置项为：
+     * <pre>
+     *   {prefix}.pool.max.total
+     *   {prefix}.pool.max.per.route
+     *   {prefix}.pool.idle.evict.ms
+     *   {prefix}.pool.keepalive.ms
+     *   {prefix}.pool.lease.timeout.ms
+     *   {prefix}.timeout.connect.ms
+     *   {prefix}.timeout.read.ms
+     * </pre>
+     *
+     * @param prefix 配置项前缀，如 system.internal.rest.user
+     */
+    public static ContextHttpPoolConfig fromConfig(String prefix) {
+        ContextHttpPoolConfig config = new ContextHttpPoolConfig();
+        if (StringUtils.isBlank(prefix) || !ContextUtil.configAccessable()) {
+            return config;
+        }
+        prefix = prefix.trim();
+        return config.setMaxTotal(CommonUtil.parseInteger(
+                        ContextUtil.getConfigTrimed(prefix + ".pool.max.total"), config.getMaxTotal()))
+                .setMaxPerRoute(CommonUtil.parseInteger(
+                        ContextUtil.getConfigTrimed(prefix + ".pool.max.per.route"), config.getMaxPerRoute()))
+                .setIdleEvictMS(CommonUtil.parseLong(
+                        ContextUtil.getConfigTrimed(prefix + ".pool.idle.evict.ms"), config.getIdleEvictMS()))
+                .setKeepAliveMS(CommonUtil.parseLong(
+                        ContextUtil.getConfigTrimed(prefix + ".pool.keepalive.ms"), config.getKeepAliveMS()))
+                .setLeaseTimeoutMS(CommonUtil.parseInteger(
+                        ContextUtil.getConfigTrimed(prefix + ".pool.lease.timeout.ms"), config.getLeaseTimeoutMS()))
+                .setConnectTimeoutMS(CommonUtil.parseInteger(
+                        ContextUtil.getConfigTrimed(prefix + ".timeout.connect.ms"), config.getConnectTimeoutMS()))
+                .setReadTimeoutMS(CommonUtil.parseInteger(
+                        ContextUtil.getConfigTrimed(prefix + ".timeout.read.ms"), config.getReadTimeoutMS()));
+    }
+}
@@ -68,21 +68,25 @@ public class ContextUtil {
         return getConfigService().getValue(key, ConfigFlags.TRIMED);
     }
     
+    /**
+     * 获取拆分后的配置值。ConfigService 返回的是共享的缓存结果，此处及以下的同类方法均返回其副本，
+     * 调用方可自由修改。
+     */
     public static String[] getConfigs(String key) {
-        return getConfigService().getValues(key, "[,;]+");
+        return getConfigService().getValues(key, "[,;]+").clone();
     }
     
     public static String[] getConfigsNonBlankTrimed(String key) {
         return getConfigService().getValues(key, "[,;]+",
-                ConfigFlags.TRIMED | ConfigFlags.NONBLANK | ConfigFlags.UNIQUE);
+                ConfigFlags.TRIMED | ConfigFlags.NONBLANK | ConfigFlags.UNIQUE).clone();
     }
     
     public static String[] getConfigs(String key, String regexp) {
-        return getConfigService().getValues(key, regexp);
+        return getConfigService().getValues(key, regexp).clone();
     }
     
     public static String[] getConfig(String key, String regexp, int flags) {
-        return getConfigService().getValues(key, regexp, flags);
+        return getConfigService().getValues(key, regexp, flags).clone();
     }
     
     public static List<String> getConfigKeys() {
@@ -9,10 +9,10 @@ import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
 import com.socyno.base.bscexec.MessageException;
-import com.socyno.base.bscmixutil.CommonUtil;
 import com.socyno.base.bscmixutil.StringUtils;
 import com.socyno.base.bscmodel.AbstractUser;
 import com.socyno.base.bscmodel.ObjectMap;
+import com.socyno.webbsc.config.ConfigKey;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,13 +29,17 @@ public class LoginTokenUtil {
     
     public static final String CONFIG_TOKEN_EXPIRATION_KEY = "system.session.token.expiration";
     
+    private final static ConfigKey<String> TOKEN_SECRET = ConfigKey.ofString(CONFIG_TOKEN_SECRET_KEY, null);
+    
+    private final static ConfigKey<Long> TOKEN_EXPIRATION_MS = ConfigKey.ofLong(CONFIG_TOKEN_EXPIRATION_KEY, 72000000L);
+    
     private static long getExpirationMS() {
-        return CommonUtil.parseLong(ContextUtil.getConfigTrimed(CONFIG_TOKEN_EXPIRATION_KEY), 72000000L);
+        return TOKEN_EXPIRATION_MS.get();
     }
     
 	private static String getSecretKey() {
 		String loginKey;
-		if (StringUtils.isBlank(loginKey = ContextUtil.getConfigTrimed(CONFIG_TOKEN_SECRET_KEY))) {
+		if (StringUtils.isBlank(loginKey = TOKEN_SECRET.get())) {
 			throw new MessageException("系统登陆密钥未设置,无法登陆系统");
 		}
 		return loginKey;
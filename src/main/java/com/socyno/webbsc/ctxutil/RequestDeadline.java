@@ -0,0 +1,71 @@
+package com.socyno.webbsc.ctxutil;
+
+import com.socyno.base.bscmixutil.CommonUtil;
+import com.socyno.base.bscmixutil.StringUtils;
+import com.socyno.webbsc.config.ConfigKey;
+
+/**
+ * 当前请求的截止时间（线程内有效）。
+ *
+ * 请求头（默认 socyno-deadline，可通过 system.request.deadline.header 配置）的值为调用方
+ * 剩余的时间预算（毫秒），使用相对时间以避免各节点间的时钟偏差。调用内部服务时将剩余的
+ * 时间预算作为超时时间，并继续通过请求头传递给下游服务。
+ */
+public class RequestDeadline {
+    
+    private final static String HEADER_DEFAULT = "socyno-deadline";
+    
+    private final static ConfigKey<String> HEADER = ConfigKey.ofString("system.request.deadline.header",
+            HEADER_DEFAULT);
+    
+    private final static ThreadLocal<Long> DEADLINE = new ThreadLocal<Long>();
+    
+    public static String getHeader() {
+        return HEADER.get();
+    }
+    
+    /**
+     * 获取截止时间（毫秒时间戳），未设置时返回空
+     */
+    public static Long get() {
+        return DEADLINE.get();
+    }
+    
+    /**
+     * 设置截止时间（毫秒时间戳），为空时清除
+     */
+    public static void set(Long deadline) {
+        if (deadline == null) {
+            DEADLINE.remove();
+            return;
+        }
+        DEADLINE.set(deadline);
+    }
+    
+    /**
+     * 根据请求头的值（剩余的时间预算）设置截止时间，值无效时清除
+     */
+    public static void setBudget(String budgetMS) {
+        long budget;
+        if ((budget = CommonUtil.parseLong(StringUtils.trimToNull(budgetMS), -1L)) < 0) {
+            DEADLINE.remove();
+            return;
+        }
+        DEADLINE.set(System.currentTimeMillis() + budget);
+    }
+    
+    public static void clear() {
+        DEADLINE.remove();
+    }
+    
+    /**
+     * 获取剩余的时间预算（毫秒）：未设置截止时间时返回 -1，已超时返回 0
+     */
+    public static long getRemainingMS() {
+        Long deadline;
+        if ((deadline = DEADLINE.get()) == null) {
+            return -1;
+        }
+        return Math.max(deadline - System.currentTimeMillis(), 0);
+    }
+}
@@ -0,0 +1,112 @@
+package com.socyno.webbsc.ctxutil;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import lombok.NonNull;
+
+/**
+ * 以 form-urlencoded 形式输出的请求体：发送时将参数逐个编码并直接写入连接的输出流中
+ * （chunked 传输）。集合或数组类型的参数值将以相同的参数名重复输出。
+ */
+public class StreamingFormEntity extends AbstractHttpEntity {
+    
+    private final Map<String, Object> pairs;
+    
+    private final String charset;
+    
+    public StreamingFormEntity(Map<String, Object> pairs, @NonNull String charset) {
+        this.pairs = pairs;
+        this.charset = charset;
+        setChunked(true);
+        setContentType(String.format("application/x-www-form-urlencoded;charset=%s", charset));
+    }
+    
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+    
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+    
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+    
+    /**
+     * 仅在无法直接写入输出流时使用，将生成完整的请求体
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeTo(output);
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+    
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        /* 不关闭连接的输出流，由调用方负责 */
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+            
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, charset));
+        try {
+            if (pairs == null) {
+                return;
+            }
+            boolean first = true;
+            for (Map.Entry<String, Object> pair : pairs.entrySet()) {
+                if (pair.getKey() == null) {
+                    continue;
+                }
+                Object value = pair.getValue();
+                Iterable<?> values = value instanceof Iterable ? (Iterable<?>) value
+                        : (value instanceof Object[] ? Arrays.asList((Object[]) value) : null);
+                if (values == null) {
+                    first = writePair(writer, first, pair.getKey(), value);
+                    continue;
+                }
+                for (Object item : values) {
+                    first = writePair(writer, first, pair.getKey(), item);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+    
+    private boolean writePair(Writer writer, boolean first, String name, Object value) throws IOException {
+        if (!first) {
+            writer.write('&');
+        }
+        writer.write(URLEncoder.encode(name, charset));
+        writer.write('=');
+        if (value != null) {
+            writer.write(URLEncoder.encode(value.toString(), charset));
+        }
+        return false;
+    }
+}
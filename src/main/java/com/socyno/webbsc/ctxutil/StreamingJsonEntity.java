@@ -0,0 +1,90 @@
+package com.socyno.webbsc.ctxutil;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import lombok.NonNull;
+
+/**
+ * 以 JSON 形式输出的请求体：发送时通过 JsonWriter 将对象直接序列化到连接的输出流中
+ * （chunked 传输），不生成完整的 JSON 文本及其字节数组。
+ *
+ * 每次发送都重新序列化，因此可重复发送（重试）。
+ */
+public class StreamingJsonEntity extends AbstractHttpEntity {
+    
+    private final Object data;
+    
+    private final Gson gson;
+    
+    private final String charset;
+    
+    public StreamingJsonEntity(Object data, @NonNull Gson gson, @NonNull String charset) {
+        this.data = data;
+        this.gson = gson;
+        this.charset = charset;
+        setChunked(true);
+        setContentType(String.format("application/json;charset=%s", charset));
+    }
+    
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+    
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+    
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+    
+    /**
+     * 仅在无法直接写入输出流时使用，将生成完整的请求体
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeTo(output);
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+    
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        /* 不关闭连接的输出流，由调用方负责 */
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+            
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, charset)));
+        try {
+            if (data == null) {
+                writer.nullValue();
+            } else {
+                gson.toJson(data, data.getClass(), writer);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.socyno.webbsc.ctxutil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.socyno.base.bscmixutil.StringUtils;
+
+import lombok.NonNull;
+
+/**
+ * 以 multipart/form-data 形式输出的请求体，文件内容在发送时才从文件或输入流中读取并直接写入
+ * 连接，不在内存中缓存。
+ *
+ * 文件部分全部来自 Path 时可重复发送并预先计算长度；包含 InputStream 时仅能发送一次，
+ * 并以 chunked 方式传输（输入流在发送完成后关闭）。
+ */
+public class StreamingMultipartEntity extends AbstractHttpEntity {
+    
+    private final static byte[] CRLF = {'\r', '\n'};
+    private final static byte[] DASHES = {'-', '-'};
+    
+    private final String charset;
+    
+    private final String boundary;
+    
+    private final List<Part> parts = new ArrayList<Part>();
+    
+    private static class Part {
+        private final byte[] header;
+        private final byte[] value;
+        private final Path file;
+        private final InputStream stream;
+        
+        private Part(byte[] header, byte[] value, Path file, InputStream stream) {
+            this.header = header;
+            this.value = value;
+            this.file = file;
+            this.stream = stream;
+        }
+    }
+    
+    public StreamingMultipartEntity(@NonNull String charset) {
+        this.charset = charset;
+        this.boundary = "----" + UUID.randomUUID().toString().replace("-", "");
+        setContentType(String.format("multipart/form-data; boundary=%s", boundary));
+    }
+    
+    /**
+     * 添加普通字段
+     */
+    public StreamingMultipartEntity addField(@NonNull String name, String value) throws IOException {
+        parts.add(new Part(toHeader(name, null, null), StringUtils.nullToEmpty(value).getBytes(charset), null, null));
+        return this;
+    }
+    
+    /**
+     * 添加文件，文件名取自路径，内容类型根据文件名推断
+     */
+    public StreamingMultipartEntity addFile(@NonNull String name, @NonNull Path file) throws IOException {
+        String filename = file.getFileName().toString();
+        parts.add(new Part(toHeader(name, filename, Files.probeContentType(file)), null, file, null));
+        return this;
+    }
+    
+    /**
+     * 添加文件，内容在发送时从输入流中读取
+     *
+     * @param contentType 内容类型，为空时使用 application/octet-stream
+     */
+    public StreamingMultipartEntity addFile(@NonNull String name, @NonNull String filename, String contentType,
+            @NonNull InputStream content) throws IOException {
+        parts.add(new Part(toHeader(name, filename, contentType), null, null, content));
+        return this;
+    }
+    
+    private byte[] toHeader(String name, String filename, String contentType) throws IOException {
+        StringBuilder header = new StringBuilder("Content-Disposition: form-data; name=\"")
+                .append(escape(name)).append('"');
+        if (filename != null) {
+            header.append("; filename=\"").append(escape(filename)).append('"')
+                    .append("\r\nContent-Type: ")
+                    .append(StringUtils.ifBlank(contentType, "application/octet-stream"));
+        }
+        return header.append("\r\n\r\n").toString().getBytes(charset);
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+    }
+    
+    @Override
+    public boolean isRepeatable() {
+        for (Part part : parts) {
+            if (part.stream != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean isStreaming() {
+        return !isRepeatable();
+    }
+    
+    @Override
+    public boolean isChunked() {
+        return getContentLength() < 0;
+    }
+    
+    @Override
+    public long getContentLength() {
+        long length = 0;
+        byte[] boundaryBytes = boundary.getBytes();
+        for (Part part : parts) {
+            length += DASHES.length + boundaryBytes.length + CRLF.length + part.header.length + CRLF.length;
+            if (part.value != null) {
+                length += part.value.length;
+            } else if (part.file != null) {
+                try {
+                    length += Files.size(part.file);
+                } catch (IOException e) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return length + DASHES.length + boundaryBytes.length + DASHES.length + CRLF.length;
+    }
+    
+    /**
+     * 仅在无法直接写入输出流时使用，将生成完整的请求体
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeTo(output);
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+    
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        byte[] boundaryBytes = boundary.getBytes();
+        WritableByteChannel channel = null;
+        for (Part part : parts) {
+            output.write(DASHES);
+            output.write(boundaryBytes);
+            output.write(CRLF);
+            output.write(part.header);
+            if (part.value != null) {
+                output.write(part.value);
+            } else if (part.file != null) {
+                output.flush();
+                if (channel == null) {
+                    channel = Channels.newChannel(output);
+                }
+                FileChannel file = FileChannel.open(part.file, StandardOpenOption.READ);
+                try {
+                    long transferred;
+                    long position = 0;
+                    long size = file.size();
+                    while (position < size) {
+                        if ((transferred = file.transferTo(position, size - position, channel)) <= 0) {
+                            throw new EOFException(String.format("File %s truncated while uploading.", part.file));
+                        }
+                        position += transferred;
+                    }
+                } finally {
+                    file.close();
+                }
+            } else {
+                try {
+                    byte[] buffer = new byte[8192];
+                    int length;
+                    while ((length = part.stream.read(buffer)) >= 0) {
+                        output.write(buffer, 0, length);
+                    }
+                } finally {
+                    part.stream.close();
+                }
+            }
+            output.write(CRLF);
+        }
+        output.write(DASHES);
+        output.write(boundaryBytes);
+        output.write(DASHES);
+        output.write(CRLF);
+        output.flush();
+    }
+}
@@ -0,0 +1,12 @@
+package com.socyno.webbsc.exception;
+
+import com.socyno.base.bscexec.MessageException;
+
+public class InternalRestCircuitOpenException extends MessageException {
+    private static final long serialVersionUID = 1L;
+    
+    public InternalRestCircuitOpenException(String url){
+        super(String.format("内部服务(%s)异常，已熔断，请稍后再试！", url));
+    }
+    
+}
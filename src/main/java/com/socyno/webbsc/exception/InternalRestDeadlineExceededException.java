@@ -0,0 +1,12 @@
+package com.socyno.webbsc.exception;
+
+import com.socyno.base.bscexec.MessageException;
+
+public class InternalRestDeadlineExceededException extends MessageException {
+    private static final long serialVersionUID = 1L;
+    
+    public InternalRestDeadlineExceededException(String url){
+        super(String.format("请求已超时，终止调用内部服务(%s)！", url));
+    }
+    
+}
@@ -8,11 +8,10 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.servlet.NoHandlerFoundException;
 
 import com.socyno.base.bscexec.HttpResponseException;
-import com.socyno.base.bscmixutil.CommonUtil;
 import com.socyno.base.bscmixutil.JsonUtil;
 import com.socyno.base.bscmixutil.StringUtils;
 import com.socyno.base.bscmodel.R;
-import com.socyno.webbsc.ctxutil.ContextUtil;
+import com.socyno.webbsc.config.ConfigKey;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -42,6 +41,10 @@ public class MvcResponseExceptionHandler {
         handleException(req, rsp, e, HttpStatus.INTERNAL_SERVER_ERROR);
     }
     
+    /* 异常统一处理时的响应状态码，未设置时使用异常对应的状态码 */
+    private static final ConfigKey<Integer> UNIFIED_RESPONSE_STATUS = ConfigKey
+            .ofInteger("system.basic.exception.unified.response.status", null);
+    
     @SuppressWarnings("serial")
     private static final Map<String, Map<Pattern, String>> SpecialExceptionMessage = new HashMap<String, Map<Pattern, String>>() {
         {
@@ -101,8 +104,8 @@ public class MvcResponseExceptionHandler {
         }
         String data = JsonUtil.toJson(r);
         /* 允许通过参数设置异常统一处理时的响应状态码 */
-        rsp.setStatus(CommonUtil.parseInteger(
-                ContextUtil.getConfigTrimed("system.basic.exception.unified.response.status"), r.getStatus()));
+        Integer status;
+        rsp.setStatus((status = UNIFIED_RESPONSE_STATUS.get()) == null ? r.getStatus() : status);
         rsp.setContentType("application/json;charset=UTF-8");
         PrintWriter writer = rsp.getWriter();
         writer.write(data);
@@ -4,11 +4,13 @@ import java.net.URLEncoder;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -27,8 +29,9 @@ import com.socyno.base.bscmodel.SessionContext;
 import com.socyno.base.bscsqlutil.AbstractDao;
 import com.socyno.base.bscsqlutil.AbstractDao.ResultSetProcessor;
 import com.socyno.base.bscsqlutil.SqlQueryUtil;
+import com.socyno.webbsc.config.ConfigFlags;
+import com.socyno.webbsc.config.ConfigKey;
 import com.socyno.webbsc.ctxsrv.CommonSftpService;
-import com.socyno.webbsc.ctxutil.ContextUtil;
 import com.socyno.webbsc.exception.PageNotFoundException;
 import com.socyno.webbsc.exception.PreviewContentNotAllownedException;
 import com.socyno.webbsc.exception.PreviewTooLargeException;
@@ -44,6 +47,14 @@ public class SimpleAttachmentService {
     @Getter
     private static final SimpleAttachmentService Default = new SimpleAttachmentService();
     
+    private static final ConfigKey<Long> PREVIEW_MAX_SIZE = ConfigKey.ofLong("system.attachment.preview.maxsize",
+            1024 * 5000L);
+    
+    private static final ConfigKey<Set<String>> PREVIEW_ALLOWED_TYPES = ConfigKey
+            .ofStringSet("system.attachment.preview.allowns", ",", ConfigFlags.LOWER);
+    
+    private static final List<String> DEFAULT_PREVIEW_ALLOWED_TYPES = Arrays.asList("text/*", "image/*");
+    
     public AbstractDao getDao() {
         return TenantSpecialDataSource.getMain();
     }
@@ -225,19 +236,15 @@ public class SimpleAttachmentService {
     public void preview(long attachmentId,
                         HttpServletRequest req, HttpServletResponse resp) throws Exception {
         SimpleAttachmentPath attchment = get(attachmentId, null, null);
-        if (attchment.getSize() > CommonUtil.parseLong(ContextUtil.
-                getConfigTrimed("system.attachment.preview.maxsize"), 1024 * 5000L)) {
+        if (attchment.getSize() > PREVIEW_MAX_SIZE.get()) {
             throw new PreviewTooLargeException();
         }
         if (StringUtils.isBlank(attchment.getContentType())) {
             throw new PreviewContentNotAllownedException();
         }
-        String[] allowMimeTypes;
-        if ((allowMimeTypes = StringUtils.split(
-                ContextUtil.getConfigTrimed("system.attachment.preview.allowns"),
-                ",", StringUtils.STR_LOWER|StringUtils.STR_NONBLANK|StringUtils.STR_TRIMED
-            )).length <= 0) {
-            allowMimeTypes = new String[] {"text/*", "image/*"};
+        Collection<String> allowMimeTypes;
+        if ((allowMimeTypes = PREVIEW_ALLOWED_TYPES.get()).isEmpty()) {
+            allowMimeTypes = DEFAULT_PREVIEW_ALLOWED_TYPES;
         }
         boolean allowed = false;
         for (String mimeType : allowMimeTypes) {
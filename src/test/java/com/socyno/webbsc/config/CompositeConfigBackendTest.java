@@ -0,0 +1,153 @@
+package com.socyno.webbsc.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.base.bscexec.MessageException;
+
+public class CompositeConfigBackendTest {
+    
+    private final static String PROPERTY_PREFIX = "composite.test.";
+    
+    private Path file;
+    
+    private MemoryConfigBackend backend;
+    
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("composite-config", ".properties");
+        backend = new MemoryConfigBackend();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        System.clearProperty(PROPERTY_PREFIX + "d");
+    }
+    
+    private void writeFile(String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new HashMap<String, String>();
+        defaults.put("a", "default");
+        defaults.put("b", "default");
+        defaults.put(PROPERTY_PREFIX + "d", "default");
+        return defaults;
+    }
+    
+    private CompositeConfigBackend composite() throws Exception {
+        return new CompositeConfigBackend(CompositeConfigBackend.defaults(defaults()),
+                CompositeConfigBackend.backend(backend, 0), CompositeConfigBackend.propertiesFile(file, 0),
+                CompositeConfigBackend.systemProperties(PROPERTY_PREFIX, 0));
+    }
+    
+    private static String value(ConfigBackend backend, String name) {
+        ConfigItem item;
+        return (item = backend.getConfig(name)) == null ? null : item.getValue();
+    }
+    
+    @Test
+    public void testLayerPrecedence() throws Exception {
+        backend.setConfig(new ConfigItem().setName("b").setValue("backend"));
+        backend.setConfig(new ConfigItem().setName("c").setValue("backend"));
+        writeFile("c=file\n");
+        System.setProperty(PROPERTY_PREFIX + "d", "system");
+        CompositeConfigBackend composite = composite();
+        assertEquals("default", value(composite, "a"));
+        assertEquals("backend", value(composite, "b"));
+        assertEquals("file", value(composite, "c"));
+        assertEquals("system", value(composite, PROPERTY_PREFIX + "d"));
+        assertNull(composite.getConfig("e"));
+        assertEquals(4, composite.getConfigKeys().size());
+    }
+    
+    @Test
+    public void testWritesGoToBackendLayer() throws Exception {
+        writeFile("c=file\n");
+        CompositeConfigBackend composite = composite();
+        composite.setConfig(new ConfigItem().setName("a").setValue("written"));
+        assertEquals("written", value(composite, "a"));
+        assertEquals("written", value(backend, "a"));
+        /* 被更高优先级的层覆盖时修改不生效 */
+        composite.setConfig(new ConfigItem().setName("c").setValue("written"));
+        assertEquals("file", value(composite, "c"));
+        assertEquals("written", value(backend, "c"));
+        List<ConfigItem> configs = new ArrayList<ConfigItem>();
+        configs.add(new ConfigItem().setName("b").setValue("batch"));
+        configs.add(new ConfigItem().setName("f").setValue("batch"));
+        composite.setConfigs(configs);
+        assertEquals("batch", value(composite, "b"));
+        assertEquals("batch", value(composite, "f"));
+        /* 删除后恢复为低优先级层的值 */
+        composite.deleteConfigs("a", "f");
+        assertEquals("default", value(composite, "a"));
+        assertNull(composite.getConfig("f"));
+    }
+    
+    @Test
+    public void testReloadPicksUpChangedLayers() throws Exception {
+        writeFile("c=file\n");
+        CompositeConfigBackend composite = composite();
+        writeFile("c=changed file\na=file\n");
+        System.setProperty(PROPERTY_PREFIX + "d", "system");
+        backend.setConfig(new ConfigItem().setName("g").setValue("backend"));
+        assertEquals("file", value(composite, "c"));
+        composite.reload();
+        assertEquals("changed file", value(composite, "c"));
+        assertEquals("file", value(composite, "a"));
+        assertEquals("system", value(composite, PROPERTY_PREFIX + "d"));
+        assertEquals("backend", value(composite, "g"));
+        assertTrue(backend.getReloads() > 0);
+        Files.delete(file);
+        composite.reload();
+        assertNull(composite.getConfig("c"));
+        assertEquals("default", value(composite, "a"));
+    }
+    
+    @Test
+    public void testDeletedBackendConfigDoesNotOverride() throws Exception {
+        MemoryConfigBackend tombstones = new MemoryConfigBackend() {
+            @Override
+            public List<String> getConfigKeys() {
+                List<String> keys = super.getConfigKeys();
+                keys.add("a");
+                return keys;
+            }
+            
+            @Override
+            public ConfigItem getConfig(String name) {
+                return "a".equals(name) ? new ConfigItem().setName("a") : super.getConfig(name);
+            }
+        };
+        CompositeConfigBackend composite = new CompositeConfigBackend(
+                CompositeConfigBackend.defaults(defaults()), CompositeConfigBackend.backend(tombstones, 0));
+        assertEquals("default", value(composite, "a"));
+    }
+    
+    @Test(expected = MessageException.class)
+    public void testWriteWithoutBackendLayer() throws Exception {
+        new CompositeConfigBackend(CompositeConfigBackend.defaults(defaults()))
+                .setConfig(new ConfigItem().setName("a").setValue("x"));
+    }
+    
+    @Test(expected = MessageException.class)
+    public void testAtMostOneBackendLayer() throws Exception {
+        new CompositeConfigBackend(CompositeConfigBackend.backend(backend, 0),
+                CompositeConfigBackend.backend(new MemoryConfigBackend(), 0));
+    }
+}
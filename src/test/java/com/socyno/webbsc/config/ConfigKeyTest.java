@@ -0,0 +1,186 @@
+package com.socyno.webbsc.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigKeyTest {
+    
+    private ConfigService service;
+    
+    private final List<ConfigKey<?>> watched = new ArrayList<ConfigKey<?>>();
+    
+    private final List<ConfigKey.Listener<?>> listeners = new ArrayList<ConfigKey.Listener<?>>();
+    
+    @Before
+    public void setUp() {
+        service = new ConfigService();
+        service.setBackend(new MemoryConfigBackend());
+        new PropertyPlaceholderLoader().setConfigService(service);
+    }
+    
+    @After
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void tearDown() {
+        for (int i = 0; i < watched.size(); i++) {
+            ((ConfigKey) watched.get(i)).removeListener((ConfigKey.Listener) listeners.get(i));
+        }
+        new PropertyPlaceholderLoader().setConfigService(null);
+    }
+    
+    private <T> ConfigKey<T> watch(ConfigKey<T> key, ConfigKey.Listener<T> listener) {
+        watched.add(key);
+        listeners.add(listener);
+        return key.addListener(listener);
+    }
+    
+    @Test
+    public void testDefaults() throws Exception {
+        ConfigKey<Long> key = ConfigKey.ofLong("test.number", 7L);
+        assertEquals(Long.valueOf(7), key.get());
+        service.setConfig("test.number", "  ");
+        assertEquals(Long.valueOf(7), key.get());
+        service.setConfig("test.number", "seven");
+        assertEquals(Long.valueOf(7), key.get());
+        service.setConfig("test.number", " 12 ");
+        assertEquals(Long.valueOf(12), key.get());
+        new PropertyPlaceholderLoader().setConfigService(null);
+        assertEquals(Long.valueOf(7), key.get());
+    }
+    
+    @Test
+    public void testScalarParsers() throws Exception {
+        service.setConfig("test.string", "  text ");
+        service.setConfig("test.integer", "-3");
+        assertEquals("text", ConfigKey.ofString("test.string", null).get());
+        assertEquals(Integer.valueOf(-3), ConfigKey.ofInteger("test.integer", 0).get());
+        for (String value : Arrays.asList("yes", "TRUE", " on ", "1")) {
+            service.setConfig("test.boolean", value);
+            assertTrue(ConfigKey.ofBoolean("test.boolean", false).get());
+        }
+        for (String value : Arrays.asList("no", "false", "0", "2")) {
+            service.setConfig("test.boolean", value);
+            assertFalse(ConfigKey.ofBoolean("test.boolean", true).get());
+        }
+    }
+    
+    @Test
+    public void testDurationParser() throws Exception {
+        ConfigKey<Long> key = ConfigKey.ofDuration("test.duration", 1L);
+        String[] values = { "500", "30s", "5 m", "2H", "1d", "20ms", "1.5s", "-1s" };
+        long[] expected = { 500, 30000, 300000, 7200000, 86400000, 20, 1, 1 };
+        for (int i = 0; i < values.length; i++) {
+            service.setConfig("test.duration", values[i]);
+            assertEquals(values[i], expected[i], key.get().longValue());
+        }
+    }
+    
+    @Test
+    public void testStringSetParser() throws Exception {
+        service.setConfig("test.set", " Image , PDF,,image ; doc");
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("image", "pdf", "doc")),
+                ConfigKey.ofStringSet("test.set", "[,;]", ConfigFlags.LOWER).get());
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("Image", "PDF", "image ; doc")),
+                ConfigKey.ofStringSet("test.set", ",", 0).get());
+        Set<String> paths = ConfigKey.ofStringSet("test.set", ";", ConfigFlags.UPPER | ConfigFlags.PATHEND).get();
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("IMAGE , PDF,,IMAGE/", "DOC/")), paths);
+        assertTrue(ConfigKey.ofStringSet("test.missing", ",", 0).get().isEmpty());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testStringSetIsUnmodifiable() throws Exception {
+        service.setConfig("test.set", "a,b");
+        ConfigKey.ofStringSet("test.set", ",", 0).get().add("c");
+    }
+    
+    @Test
+    public void testStringMapAndPatternParsers() throws Exception {
+        service.setConfig("test.map", "{\"a\":\"1\",\"b\":\"2\"}");
+        Map<String, String> map = ConfigKey.ofStringMap("test.map").get();
+        assertEquals("2", map.get("b"));
+        service.setConfig("test.map", "[broken");
+        assertTrue(ConfigKey.ofStringMap("test.map").get().isEmpty());
+        ConfigKey<Pattern> pattern = ConfigKey.ofPattern("test.pattern", "^a$", Pattern.CASE_INSENSITIVE);
+        assertTrue(pattern.get().matcher("A").matches());
+        service.setConfig("test.pattern", "^b+$");
+        assertTrue(pattern.get().matcher("BB").matches());
+        service.setConfig("test.pattern", "(");
+        assertTrue(pattern.get().matcher("a").matches());
+        assertNull(ConfigKey.ofPattern("test.none", null, 0).get());
+    }
+    
+    @Test
+    public void testParsesOnlyOnChange() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        ConfigKey<String> key = new ConfigKey<String>("test.value", "none", new ConfigKey.Parser<String>() {
+            @Override
+            public String parse(String value) {
+                parses.incrementAndGet();
+                return value;
+            }
+        });
+        service.setConfig("test.value", "a");
+        String first = key.get();
+        assertTrue(first == key.get());
+        assertEquals(1, parses.get());
+        /* 重新加载后配置项对象变化但值不变，无需重新解析 */
+        service.reload();
+        assertTrue(first == key.get());
+        assertEquals(1, parses.get());
+        service.setConfig("test.value", "b");
+        assertEquals("b", key.get());
+        assertEquals(2, parses.get());
+    }
+    
+    @Test
+    public void testListenerNotifiedOnChange() throws Exception {
+        final List<String> changes = new ArrayList<String>();
+        service.setConfig("test.watched", "1");
+        watch(ConfigKey.ofInteger("test.watched", 0), new ConfigKey.Listener<Integer>() {
+            @Override
+            public void changed(ConfigKey<Integer> key, Integer oldValue, Integer newValue) {
+                changes.add(oldValue + "->" + newValue);
+            }
+        });
+        service.setConfig("test.watched", " 1 ");
+        service.reload();
+        assertTrue(changes.isEmpty());
+        service.setConfig("test.watched", "2");
+        service.deleteConfigs("test.watched");
+        assertEquals(Arrays.asList("1->2", "2->0"), changes);
+    }
+    
+    @Test
+    public void testFailingListenerDoesNotStopOthers() throws Exception {
+        final List<Integer> changes = new ArrayList<Integer>();
+        ConfigKey<Integer> key = ConfigKey.ofInteger("test.watched", 0);
+        watch(key, new ConfigKey.Listener<Integer>() {
+            @Override
+            public void changed(ConfigKey<Integer> key, Integer oldValue, Integer newValue) {
+                throw new IllegalStateException("failed");
+            }
+        });
+        watch(key, new ConfigKey.Listener<Integer>() {
+            @Override
+            public void changed(ConfigKey<Integer> key, Integer oldValue, Integer newValue) {
+                changes.add(newValue);
+            }
+        });
+        service.setConfig("test.watched", "5");
+        assertEquals(Arrays.asList(5), changes);
+    }
+}
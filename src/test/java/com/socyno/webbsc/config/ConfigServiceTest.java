@@ -0,0 +1,91 @@
+package com.socyno.webbsc.config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigServiceTest {
+    
+    private MemoryConfigBackend backend;
+    
+    private ConfigService service;
+    
+    @Before
+    public void setUp() {
+        backend = new MemoryConfigBackend();
+        service = new ConfigService();
+        service.setBackend(backend);
+    }
+    
+    @Test
+    public void testSplitValues() throws Exception {
+        service.setConfig("a.list", " A, b ,,a ,C ");
+        assertArrayEquals(new String[] { " A", " b ", "", "a ", "C " }, service.getValues("a.list", ","));
+        assertArrayEquals(new String[] { "a", "b", "c" }, service.getValues("a.list", ",",
+                ConfigFlags.TRIMED | ConfigFlags.LOWER | ConfigFlags.NONBLANK | ConfigFlags.UNIQUE));
+        assertArrayEquals(new String[] { "A/", "B/", "/", "A/", "C/" }, service.getValues("a.list", "\\s*,\\s*",
+                ConfigFlags.TRIMED | ConfigFlags.UPPER | ConfigFlags.PATHEND));
+        assertEquals("a, b ,,a ,c", service.getValue("a.list", ConfigFlags.TRIMED | ConfigFlags.LOWER));
+    }
+    
+    @Test
+    public void testMissingOrEmptyValues() throws Exception {
+        assertEquals(0, service.getValues("a.missing", ",").length);
+        assertEquals("", service.getValue("a.missing", ConfigFlags.TRIMED));
+        service.setConfig("a.empty", "");
+        assertEquals(0, service.getValues("a.empty", ",").length);
+        assertEquals(0, service.getValues(null, ",").length);
+    }
+    
+    @Test
+    public void testSplitResultsAreCached() throws Exception {
+        service.setConfig("a.list", "x,y");
+        String[] values = service.getValues("a.list", ",");
+        assertTrue(values == service.getValues("a.list", ","));
+        assertTrue(values != service.getValues("a.list", ";"));
+        assertTrue(values != service.getValues("a.list", ",", ConfigFlags.TRIMED));
+        /* 重新加载后值未变化时沿用缓存 */
+        backend.reload();
+        assertTrue(values == service.getValues("a.list", ","));
+    }
+    
+    @Test
+    public void testCacheFollowsValueChanges() throws Exception {
+        service.setConfig("a.list", "x,y");
+        String[] values = service.getValues("a.list", ",");
+        service.setConfig("a.list", "x,y,z");
+        assertArrayEquals(new String[] { "x", "y", "z" }, service.getValues("a.list", ","));
+        /* 绕过 ConfigService 的修改（如其他节点修改后重新加载）同样可见 */
+        backend.setConfig(new ConfigItem().setName("a.list").setValue("z"));
+        assertArrayEquals(new String[] { "z" }, service.getValues("a.list", ","));
+        service.deleteConfigs("a.list");
+        assertEquals(0, service.getValues("a.list", ",").length);
+        assertTrue(values.length == 2);
+    }
+    
+    @Test
+    public void testRejectsInvalidKeys() throws Exception {
+        try {
+            service.setConfig("a list", "x");
+            fail();
+        } catch (InvalidConfigKeyException e) {
+            assertNull(service.getConfig("a list"));
+        }
+        try {
+            service.setConfigs(Arrays.asList(new ConfigItem().setName("a.ok").setValue("x"), null));
+            fail();
+        } catch (InvalidConfigKeyException e) {
+            assertNull(service.getConfig("a.ok"));
+        }
+        service.setConfigs(Arrays.asList(new ConfigItem().setName("a.ok").setValue("x"),
+                new ConfigItem().setName("a.other").setValue("y")));
+        assertEquals("y", service.getValue("a.other"));
+    }
+}
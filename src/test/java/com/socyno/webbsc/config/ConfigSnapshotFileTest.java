@@ -0,0 +1,100 @@
+package com.socyno.webbsc.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigSnapshotFileTest {
+    
+    private Path dir;
+    
+    private Path path;
+    
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("config-snapshot");
+        path = dir.resolve("sub").resolve("configs.snapshot");
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(path.getParent());
+        Files.deleteIfExists(dir);
+    }
+    
+    private static Map<String, ConfigItem> configs() {
+        Map<String, ConfigItem> configs = new HashMap<String, ConfigItem>();
+        configs.put("a.b", new ConfigItem().setName("a.b").setValue("值 1").setComment("备注"));
+        configs.put("a.c", new ConfigItem().setName("a.c").setValue(null).setComment(null));
+        configs.put("a.d", new ConfigItem().setName("a.d").setValue("").setComment(""));
+        return configs;
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        ConfigSnapshotFile snapshot = new ConfigSnapshotFile(path, "system_config");
+        snapshot.save(configs());
+        Map<String, ConfigItem> loaded = snapshot.load();
+        assertEquals(3, loaded.size());
+        assertEquals("值 1", loaded.get("a.b").getValue());
+        assertEquals("备注", loaded.get("a.b").getComment());
+        assertNull(loaded.get("a.c").getValue());
+        assertNull(loaded.get("a.c").getComment());
+        assertEquals("", loaded.get("a.d").getValue());
+        snapshot.save(new HashMap<String, ConfigItem>());
+        assertEquals(0, snapshot.load().size());
+    }
+    
+    @Test
+    public void testMissingFile() {
+        assertNull(new ConfigSnapshotFile(path, "system_config").load());
+    }
+    
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        ConfigSnapshotFile snapshot = new ConfigSnapshotFile(path, "system_config");
+        snapshot.save(configs());
+        byte[] content = Files.readAllBytes(path);
+        content[content.length / 2] ^= 0x01;
+        Files.write(path, content);
+        assertNull(snapshot.load());
+    }
+    
+    @Test
+    public void testTruncatedFile() throws Exception {
+        ConfigSnapshotFile snapshot = new ConfigSnapshotFile(path, "system_config");
+        snapshot.save(configs());
+        byte[] content = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(content, content.length - 10));
+        assertNull(snapshot.load());
+        Files.write(path, Arrays.copyOf(content, 10));
+        assertNull(snapshot.load());
+    }
+    
+    @Test
+    public void testOtherSource() throws Exception {
+        new ConfigSnapshotFile(path, "system_config").save(configs());
+        assertNull(new ConfigSnapshotFile(path, "other_config").load());
+    }
+    
+    @Test
+    public void testMaxAge() throws Exception {
+        ConfigSnapshotFile snapshot = new ConfigSnapshotFile(path, "system_config");
+        snapshot.save(configs());
+        Thread.sleep(20);
+        assertNull(snapshot.load(10));
+        assertNotNull(snapshot.load(60000));
+        assertNotNull(snapshot.load(0));
+    }
+}
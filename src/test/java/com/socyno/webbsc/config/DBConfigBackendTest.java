@@ -0,0 +1,189 @@
+package com.socyno.webbsc.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DBConfigBackendTest {
+    
+    private FakeConfigDao dao;
+    
+    private Path snapshotFile;
+    
+    @Before
+    public void setUp() throws Exception {
+        dao = new FakeConfigDao();
+        snapshotFile = Files.createTempFile("db-config", ".snapshot");
+        Files.delete(snapshotFile);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(snapshotFile);
+    }
+    
+    private DBConfigBackend backend(Map<String, String> initConfigs, DBConfigBackend.Options options,
+            String... mapper) throws Exception {
+        Map<String, String> fieldMapper = new HashMap<String, String>();
+        for (int i = 0; i + 1 < mapper.length; i += 2) {
+            fieldMapper.put(mapper[i], mapper[i + 1]);
+        }
+        return new DBConfigBackend(dao, initConfigs, 3600, 3600, null, fieldMapper, options);
+    }
+    
+    private DBConfigBackend backend(Map<String, String> initConfigs) throws Exception {
+        return backend(initConfigs, null);
+    }
+    
+    private DBConfigBackend incremental() throws Exception {
+        return backend(null, new DBConfigBackend.Options().setChangeLogTable(FakeConfigDao.CHANGE_LOG_TABLE),
+                "version", "version");
+    }
+    
+    private DBConfigBackend snapshotted() throws Exception {
+        return backend(null, new DBConfigBackend.Options().setSnapshotFile(snapshotFile.toString()));
+    }
+    
+    private static String value(ConfigBackend backend, String name) {
+        ConfigItem item;
+        return (item = backend.getConfig(name)) == null ? null : item.getValue();
+    }
+    
+    private static ConfigItem item(String name, String value) {
+        return new ConfigItem().setName(name).setValue(value);
+    }
+    
+    @Test
+    public void testPublishesSnapshots() throws Exception {
+        dao.putRow("a", "1", true);
+        DBConfigBackend backend = backend(null);
+        assertEquals("1", value(backend, "a"));
+        DBConfigBackend.Snapshot loaded = backend.getSnapshot();
+        backend.setConfigs(Arrays.asList(item("b", "2"), item("a", "3")));
+        DBConfigBackend.Snapshot written = backend.getSnapshot();
+        assertEquals(loaded.getVersion() + 1, written.getVersion());
+        assertEquals("1", loaded.getConfigs().get("a").getValue());
+        assertEquals("3", written.getConfigs().get("a").getValue());
+        assertEquals("2", dao.getRow("b").value);
+        /* 数据库无变化时重新加载不发布新快照 */
+        backend.reload();
+        assertTrue(written == backend.getSnapshot());
+        try {
+            written.getConfigs().put("c", item("c", "4"));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertNull(backend.getConfig("c"));
+        }
+    }
+    
+    @Test
+    public void testWritesMissingInitConfigs() throws Exception {
+        dao.putRow("a", "db", true);
+        Map<String, String> initConfigs = new HashMap<String, String>();
+        initConfigs.put("a", "init");
+        initConfigs.put("b", "init");
+        DBConfigBackend backend = backend(initConfigs);
+        assertEquals("db", value(backend, "a"));
+        assertEquals("init", value(backend, "b"));
+        assertEquals("init", dao.getRow("b").value);
+        assertEquals("db", dao.getRow("a").value);
+    }
+    
+    @Test
+    public void testRejectsUnnamedConfigs() throws Exception {
+        DBConfigBackend backend = backend(null);
+        try {
+            backend.setConfigs(Arrays.asList(item("a", "1"), item(null, "2")));
+            fail();
+        } catch (InvalidConfigKeyException e) {
+            assertNull(dao.getRow("a"));
+        }
+    }
+    
+    @Test
+    public void testIncrementalReloadAppliesTombstones() throws Exception {
+        DBConfigBackend writer = incremental();
+        DBConfigBackend reader = incremental();
+        writer.setConfigs(Arrays.asList(item("a", "1"), item("b", "1")));
+        assertEquals(1, dao.getVersion());
+        reader.reload();
+        assertEquals("1", value(reader, "b"));
+        writer.deleteConfigs("b");
+        assertEquals(1, dao.getRow("b").deleted);
+        assertEquals(2, dao.getRow("b").version);
+        assertNull(writer.getConfig("b"));
+        reader.reload();
+        assertNull(reader.getConfig("b"));
+        assertEquals("1", value(reader, "a"));
+    }
+    
+    @Test
+    public void testChangeLogPolling() throws Exception {
+        DBConfigBackend reader = incremental();
+        dao.putRow("a", "1", true);
+        reader.pollChangeLog();
+        assertEquals("1", value(reader, "a"));
+        /* 编号较小的变更晚于编号较大的变更提交 */
+        long late = dao.putRow("b", "1", false);
+        dao.putRow("c", "1", true);
+        reader.pollChangeLog();
+        assertNull(reader.getConfig("b"));
+        assertEquals("1", value(reader, "c"));
+        dao.commit(late);
+        reader.pollChangeLog();
+        assertEquals("1", value(reader, "b"));
+    }
+    
+    @Test
+    public void testChangeLogWrittenWithChanges() throws Exception {
+        DBConfigBackend writer = incremental();
+        DBConfigBackend reader = incremental();
+        writer.setConfigs(Collections.singletonList(item("a", "1")));
+        reader.pollChangeLog();
+        assertEquals("1", value(reader, "a"));
+        writer.deleteConfigs("a");
+        reader.pollChangeLog();
+        assertNull(reader.getConfig("a"));
+    }
+    
+    @Test
+    public void testStartsFromSnapshotFile() throws Exception {
+        dao.putRow("a", "1", true);
+        DBConfigBackend backend = snapshotted();
+        backend.setConfigs(Collections.singletonList(item("b", "2")));
+        Map<String, ConfigItem> saved = new ConfigSnapshotFile(snapshotFile, FakeConfigDao.TABLE).load();
+        assertNotNull(saved);
+        assertEquals("1", saved.get("a").getValue());
+        assertEquals("2", saved.get("b").getValue());
+        /* 数据库不可用时以本地快照启动 */
+        dao.setFailing(true);
+        DBConfigBackend restarted = snapshotted();
+        assertEquals("1", value(restarted, "a"));
+        assertEquals("2", value(restarted, "b"));
+    }
+    
+    @Test
+    public void testIgnoresExpiredSnapshotFile() throws Exception {
+        Map<String, ConfigItem> configs = new HashMap<String, ConfigItem>();
+        configs.put("a", item("a", "snapshot"));
+        new ConfigSnapshotFile(snapshotFile, FakeConfigDao.TABLE).save(configs);
+        Thread.sleep(1100);
+        dao.putRow("a", "db", true);
+        DBConfigBackend backend = backend(null, new DBConfigBackend.Options().setSnapshotFile(snapshotFile.toString())
+                .setSnapshotMaxAgeSec(1));
+        assertEquals("db", value(backend, "a"));
+    }
+}
@@ -0,0 +1,196 @@
+package com.socyno.webbsc.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.socyno.base.bscsqlutil.AbstractDao;
+
+/**
+ * 测试用的内存数据库，仅支持 DBConfigBackend 使用的语句（默认的表名及字段名），
+ * 可模拟变更日志的编号乱序可见及查询失败
+ */
+class FakeConfigDao extends AbstractDao {
+    
+    final static String TABLE = "system_configs";
+    
+    final static String CHANGE_LOG_TABLE = "system_configs_changelog";
+    
+    static class Row {
+        String value;
+        String comment;
+        long version;
+        int deleted;
+    }
+    
+    private final Map<String, Row> rows = new TreeMap<String, Row>();
+    
+    private long version = 0;
+    
+    /**
+     * 变更日志：编号 => 配置名称，hidden 中的编号尚未提交（不可见）
+     */
+    private final TreeMap<Long, String> changeLog = new TreeMap<Long, String>();
+    private final List<Long> hidden = new ArrayList<Long>();
+    private long changeId = 0;
+    
+    private volatile boolean failing = false;
+    
+    synchronized Row getRow(String name) {
+        return rows.get(name);
+    }
+    
+    synchronized long getVersion() {
+        return version;
+    }
+    
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+    
+    /**
+     * 模拟其他节点修改配置：写入配置行并记录变更日志，返回变更日志的编号
+     *
+     * @param visible 变更日志是否立即可见（事务是否已提交）
+     */
+    synchronized long putRow(String name, String value, boolean visible) {
+        Row row = new Row();
+        row.value = value;
+        row.version = ++version;
+        rows.put(name, row);
+        changeLog.put(++changeId, name);
+        if (!visible) {
+            hidden.add(changeId);
+        }
+        return changeId;
+    }
+    
+    synchronized void commit(long id) {
+        hidden.remove(Long.valueOf(id));
+    }
+    
+    @Override
+    synchronized public List<Map<String, Object>> queryAsList(String sql, Object[] args) throws Exception {
+        if (failing) {
+            throw new IllegalStateException("Database unavailable.");
+        }
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        if (sql.startsWith("SELECT MAX(id)")) {
+            Long max = null;
+            for (Long id : changeLog.keySet()) {
+                if (!hidden.contains(id)) {
+                    max = id;
+                }
+            }
+            result.add(Collections.<String, Object>singletonMap("id", max));
+        } else if (sql.startsWith("SELECT version FROM")) {
+            result.add(Collections.<String, Object>singletonMap("version", version));
+        } else if (sql.startsWith("SELECT id, name FROM")) {
+            for (Map.Entry<Long, String> e : changeLog.tailMap((Long) args[0], false).entrySet()) {
+                if (hidden.contains(e.getKey())) {
+                    continue;
+                }
+                Map<String, Object> change = new HashMap<String, Object>();
+                change.put("id", e.getKey());
+                change.put("name", e.getValue());
+                result.add(change);
+            }
+        } else if (sql.contains("WHERE version > ?")) {
+            for (Map.Entry<String, Row> e : rows.entrySet()) {
+                if (e.getValue().version > (Long) args[0]) {
+                    result.add(toResult(e.getKey(), e.getValue()));
+                }
+            }
+        } else if (sql.contains("WHERE name IN")) {
+            for (Object name : args) {
+                Row row;
+                if ((row = rows.get(name)) != null) {
+                    result.add(toResult((String) name, row));
+                }
+            }
+        } else if (sql.startsWith("SELECT name, value, comment FROM " + TABLE)) {
+            boolean live = sql.endsWith("WHERE deleted = 0");
+            for (Map.Entry<String, Row> e : rows.entrySet()) {
+                if (!live || e.getValue().deleted == 0) {
+                    result.add(toResult(e.getKey(), e.getValue()));
+                }
+            }
+        } else {
+            throw new UnsupportedOperationException(sql);
+        }
+        return result;
+    }
+    
+    private static Map<String, Object> toResult(String name, Row row) {
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("name", name);
+        result.put("value", row.value);
+        result.put("comment", row.comment);
+        result.put("deleted", row.deleted);
+        return result;
+    }
+    
+    @Override
+    synchronized public int executeUpdate(String sql, Object[] args) throws Exception {
+        if (failing) {
+            throw new IllegalStateException("Database unavailable.");
+        }
+        if (sql.startsWith("UPDATE " + TABLE + "_version SET")) {
+            version++;
+            return 1;
+        } else if (sql.startsWith("INSERT INTO " + CHANGE_LOG_TABLE)) {
+            for (int i = 0; i < args.length; i += 2) {
+                changeLog.put(++changeId, (String) args[i]);
+            }
+            return args.length / 2;
+        } else if (sql.startsWith("DELETE FROM " + CHANGE_LOG_TABLE)) {
+            return 0;
+        } else if (sql.startsWith("INSERT INTO " + TABLE + " (")) {
+            int fields = sql.substring(sql.indexOf('('), sql.indexOf(')')).split(",").length;
+            for (int i = 0; i < args.length; i += fields) {
+                Row row = new Row();
+                row.value = (String) args[i + 1];
+                row.comment = (String) args[i + 2];
+                if (fields > 3) {
+                    row.version = (Long) args[i + 3];
+                    row.deleted = (Integer) args[i + 4];
+                }
+                rows.put((String) args[i], row);
+            }
+            return args.length / fields;
+        } else if (sql.startsWith("UPDATE " + TABLE + " SET deleted = 1")) {
+            for (Object name : Arrays.copyOfRange(args, 1, args.length)) {
+                Row row;
+                if ((row = rows.get(name)) != null) {
+                    row.deleted = 1;
+                    row.version = (Long) args[0];
+                }
+            }
+            return args.length - 1;
+        } else if (sql.startsWith("DELETE FROM " + TABLE + " WHERE deleted = 1")) {
+            int purged = 0;
+            for (Row row : new ArrayList<Row>(rows.values())) {
+                if (row.deleted == 1 && row.version <= (Long) args[0]) {
+                    rows.values().remove(row);
+                    purged++;
+                }
+            }
+            return purged;
+        } else if (sql.startsWith("DELETE FROM " + TABLE + " WHERE name IN")) {
+            for (Object name : args) {
+                rows.remove(name);
+            }
+            return args.length;
+        }
+        throw new UnsupportedOperationException(sql);
+    }
+    
+    @Override
+    synchronized public void executeTransaction(ResultSetProcessor processor) throws Exception {
+        processor.process(null, null);
+    }
+}
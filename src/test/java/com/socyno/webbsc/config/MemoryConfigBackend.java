@@ -0,0 +1,65 @@
+package com.socyno.webbsc.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 测试用的内存配置后端，每次设置或重新加载均生成新的配置项对象
+ */
+class MemoryConfigBackend implements ConfigBackend {
+    
+    private final Map<String, ConfigItem> configs = new ConcurrentHashMap<String, ConfigItem>();
+    
+    private int reloads = 0;
+    
+    @Override
+    public void reload() {
+        reloads++;
+        for (ConfigItem item : configs.values()) {
+            configs.put(item.getName(), copy(item));
+        }
+    }
+    
+    @Override
+    public List<String> getConfigKeys() {
+        return new ArrayList<String>(configs.keySet());
+    }
+    
+    @Override
+    public void deleteConfigs(String... names) {
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name != null) {
+                configs.remove(name);
+            }
+        }
+    }
+    
+    @Override
+    public ConfigItem getConfig(String name) {
+        return name == null ? null : configs.get(name);
+    }
+    
+    @Override
+    public ConfigItem setConfig(ConfigItem config) {
+        if (config.getValue() == null) {
+            configs.remove(config.getName());
+            return null;
+        }
+        ConfigItem item = copy(config);
+        configs.put(item.getName(), item);
+        return item;
+    }
+    
+    int getReloads() {
+        return reloads;
+    }
+    
+    private static ConfigItem copy(ConfigItem item) {
+        return new ConfigItem().setName(item.getName()).setValue(item.getValue()).setComment(item.getComment());
+    }
+}
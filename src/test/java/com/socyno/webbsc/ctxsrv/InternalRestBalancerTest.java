@@ -0,0 +1,158 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.socyno.base.bscmodel.R;
+import com.socyno.webbsc.ctxsrv.InternalRestBalancer.Host;
+import com.socyno.webbsc.ctxsrv.InternalRestBalancer.Strategy;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+
+public class InternalRestBalancerTest {
+    
+    private static InternalRestBalancer balancer(String... urls) {
+        return new InternalRestBalancer(Arrays.asList(urls));
+    }
+    
+    /**
+     * 发出请求直到选中指定的实例，期间选中的其他实例在选中后才释放
+     */
+    private static void acquire(InternalRestBalancer balancer, Host host) {
+        Host selected;
+        List<Host> others = new ArrayList<Host>();
+        while ((selected = balancer.acquire()) != host) {
+            others.add(selected);
+        }
+        for (Host other : others) {
+            balancer.release(other, false);
+        }
+    }
+    
+    private static void fail(InternalRestBalancer balancer, Host host, int times) {
+        for (int i = 0; i < times; i++) {
+            acquire(balancer, host);
+            balancer.release(host, true);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresHosts() {
+        new InternalRestBalancer(Collections.<String>emptyList());
+    }
+    
+    @Test
+    public void testLeastOutstanding() {
+        InternalRestBalancer balancer = balancer("http://a", "http://b", "http://c");
+        balancer.setStrategy(Strategy.LEAST_OUTSTANDING);
+        for (int i = 0; i < 3; i++) {
+            balancer.acquire();
+        }
+        for (Host host : balancer.getHosts()) {
+            assertEquals(1, host.getInflight());
+        }
+    }
+    
+    @Test
+    public void testPowerOfTwoPrefersLessLoaded() {
+        InternalRestBalancer balancer = balancer("http://a", "http://b");
+        for (int i = 0; i < 10; i++) {
+            Host first = balancer.acquire();
+            Host second = balancer.acquire();
+            assertTrue(first != second);
+            balancer.release(first, false);
+            balancer.release(second, false);
+        }
+    }
+    
+    @Test
+    public void testEjectsAfterConsecutiveFailures() {
+        InternalRestBalancer balancer = balancer("http://a", "http://b");
+        balancer.setEjectionFailures(3);
+        Host host = balancer.getHosts().get(0);
+        fail(balancer, host, 2);
+        balancer.release(host, false);
+        fail(balancer, host, 2);
+        assertFalse(host.isEjected());
+        fail(balancer, host, 1);
+        assertTrue(host.isEjected());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(balancer.acquire() != host);
+        }
+    }
+    
+    @Test
+    public void testMaxEjectionRatio() {
+        InternalRestBalancer balancer = balancer("http://a", "http://b");
+        balancer.setEjectionFailures(1);
+        fail(balancer, balancer.getHosts().get(0), 1);
+        fail(balancer, balancer.getHosts().get(1), 1);
+        assertTrue(balancer.getHosts().get(0).isEjected());
+        assertFalse(balancer.getHosts().get(1).isEjected());
+    }
+    
+    @Test
+    public void testEarliestRecoveringHostWhenAllEjected() {
+        InternalRestBalancer balancer = balancer("http://a", "http://b");
+        balancer.setEjectionFailures(1);
+        balancer.setMaxEjectionRatio(1);
+        balancer.setEjectionMS(60000);
+        fail(balancer, balancer.getHosts().get(1), 1);
+        balancer.setEjectionMS(30000);
+        fail(balancer, balancer.getHosts().get(0), 1);
+        assertTrue(balancer.getHosts().get(0).isEjected());
+        assertTrue(balancer.getHosts().get(1).isEjected());
+        assertTrue(balancer.acquire() == balancer.getHosts().get(0));
+    }
+    
+    @Test
+    public void testRecoveredHostNeedsNewFailureStreak() throws Exception {
+        InternalRestBalancer balancer = balancer("http://a", "http://b", "http://c");
+        balancer.setEjectionFailures(2);
+        balancer.setEjectionMS(50);
+        Host host = balancer.getHosts().get(0);
+        for (int i = 0; i < 4; i++) {
+            acquire(balancer, host);
+        }
+        balancer.release(host, true);
+        balancer.release(host, true);
+        assertTrue(host.isEjected());
+        /* 剔除期间结束的请求失败，不计入恢复后的连续失败次数 */
+        balancer.release(host, true);
+        balancer.release(host, true);
+        Thread.sleep(80);
+        assertFalse(host.isEjected());
+        fail(balancer, host, 1);
+        assertFalse(host.isEjected());
+        fail(balancer, host, 1);
+        assertTrue(host.isEjected());
+    }
+    
+    @Test
+    public void testServiceSpreadsRequests() throws Exception {
+        InternalRestTestServer first = new InternalRestTestServer();
+        InternalRestTestServer second = new InternalRestTestServer();
+        first.respond("/items", InternalRestTestServer.success("[]"));
+        second.respond("/items", InternalRestTestServer.success("[]"));
+        TestService service = new TestService(Arrays.asList(first.getUrl(), second.getUrl()));
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(0, service.get(R.class, "/items").getStatus());
+            }
+            assertEquals(20, first.getHits("/items") + second.getHits("/items"));
+            assertTrue(first.getHits("/items") > 0);
+            assertTrue(second.getHits("/items") > 0);
+        } finally {
+            service.shutdown();
+            first.stop();
+            second.stop();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.base.bscexec.MessageException;
+import com.socyno.webbsc.ctxsrv.AbstractInternalRestService.BatchRequest;
+import com.socyno.webbsc.ctxsrv.AbstractInternalRestService.BatchResult;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+import com.socyno.webbsc.ctxutil.RequestDeadline;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+@SuppressWarnings("rawtypes")
+public class InternalRestBatchTest {
+    
+    private InternalRestTestServer server;
+    
+    private TestService service;
+    
+    /**
+     * 最近一次收到的请求时间预算（请求头的值）
+     */
+    private final AtomicLong budget = new AtomicLong(-1);
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new InternalRestTestServer();
+        service = server.newService();
+        server.respond("/a", InternalRestTestServer.success("{\"name\":\"a\"}"));
+        server.respond("/b", "{\"status\":1,\"message\":\"failed\"}");
+        server.respond("/c", InternalRestTestServer.success("{\"name\":\"c\"}"));
+        server.handle("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InternalRestTestServer.sleep(500);
+                InternalRestTestServer.write(exchange, 200, InternalRestTestServer.success("{\"name\":\"slow\"}"));
+            }
+        });
+        server.handle("/budget", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                budget.set(Long.parseLong(exchange.getRequestHeaders().getFirst(RequestDeadline.getHeader())));
+                InternalRestTestServer.write(exchange, 200, InternalRestTestServer.success("{\"name\":\"budget\"}"));
+            }
+        });
+        /* 持续缓慢输出响应内容（约 3 秒），读超时不会触发，只能被中止 */
+        server.handle("/trickle", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream output = exchange.getResponseBody();
+                output.write("{\"status\":0,\"data\":".getBytes(StandardCharsets.UTF_8));
+                for (int i = 0; i < 60; i++) {
+                    output.write(' ');
+                    output.flush();
+                    InternalRestTestServer.sleep(50);
+                }
+                output.write("{}}".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        server.stop();
+    }
+    
+    private static List<BatchRequest> requests(String... paths) {
+        BatchRequest[] requests = new BatchRequest[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            requests[i] = BatchRequest.get(paths[i], null);
+        }
+        return Arrays.asList(requests);
+    }
+    
+    @Test
+    public void testResultsKeepRequestOrder() {
+        List<BatchResult<Map>> results = service.batch(Map.class, requests("/a", "/b", "/c"), 2, 0, true);
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("a", results.get(0).getData().get("name"));
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError() instanceof MessageException);
+        assertEquals("c", results.get(2).getData().get("name"));
+    }
+    
+    @Test
+    public void testUnfinishedAfterDeadline() {
+        List<BatchResult<Map>> results = service.batch(Map.class, requests("/slow", "/a", "/c"), 1, 100, true);
+        assertEquals(3, results.size());
+        for (BatchResult<Map> result : results) {
+            assertTrue(result.getError() instanceof TimeoutException);
+        }
+    }
+    
+    @Test
+    public void testUnfinishedCarryRejection() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        service.setAsyncExecutor(executor);
+        List<BatchResult<Map>> results = service.batch(Map.class, requests("/a", "/c"), 2, 0, true);
+        for (BatchResult<Map> result : results) {
+            assertTrue(result.getError() instanceof RejectedExecutionException);
+        }
+    }
+    
+    @Test
+    public void testUnfinishedCarryInterruption() {
+        Thread.currentThread().interrupt();
+        try {
+            List<BatchResult<Map>> results = service.batch(Map.class, requests("/slow"), 1, 0, true);
+            assertTrue(results.get(0).getError() instanceof InterruptedException);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+    
+    @Test
+    public void testEmptyRequests() {
+        assertTrue(service.batch(Map.class, null, 2, 0, true).isEmpty());
+    }
+    
+    @Test
+    public void testDeadlinePropagatedToItems() {
+        List<BatchResult<Map>> results = service.batch(Map.class, requests("/budget"), 1, 2000, true);
+        assertNotNull(results.get(0).getData());
+        assertTrue(budget.get() > 0 && budget.get() <= 2000);
+    }
+    
+    @Test
+    public void testEarlierCallerDeadlineWins() {
+        RequestDeadline.set(System.currentTimeMillis() + 1000);
+        try {
+            service.batch(Map.class, requests("/budget"), 1, 5000, true);
+            assertTrue(budget.get() > 0 && budget.get() <= 1000);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+    
+    @Test
+    public void testOutstandingAbortedAtDeadline() {
+        service.setAsyncPoolSize(1);
+        List<BatchResult<Map>> results = service.batch(Map.class, requests("/trickle"), 1, 200, true);
+        assertTrue(results.get(0).getError() instanceof TimeoutException);
+        /* 唯一的异步线程在中止后立即空闲，无需等待缓慢的响应结束 */
+        long started = System.currentTimeMillis();
+        results = service.batch(Map.class, requests("/a"), 1, 0, true);
+        assertEquals("a", results.get(0).getData().get("name"));
+        assertTrue(System.currentTimeMillis() - started < 1500);
+    }
+}
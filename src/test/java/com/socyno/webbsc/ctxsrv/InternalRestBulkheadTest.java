@@ -0,0 +1,151 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.socyno.webbsc.ctxutil.RequestDeadline;
+import com.socyno.webbsc.exception.InternalRestBulkheadFullException;
+import com.socyno.webbsc.exception.InternalRestDeadlineExceededException;
+
+public class InternalRestBulkheadTest {
+    
+    @After
+    public void tearDown() {
+        RequestDeadline.clear();
+    }
+    
+    /**
+     * 在新线程中申请许可，返回等待申请结束的信号，申请失败的异常记录在 error 中
+     */
+    private CountDownLatch acquireAsync(final InternalRestBulkhead bulkhead, final AtomicReference<Throwable> error) {
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bulkhead.acquire("test");
+                } catch (Throwable e) {
+                    error.set(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return done;
+    }
+    
+    private void awaitQueued(InternalRestBulkhead bulkhead, int queued) throws InterruptedException {
+        for (int i = 0; i < 200 && bulkhead.getQueued() < queued; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(queued, bulkhead.getQueued());
+    }
+    
+    @Test
+    public void testAcquireWithinLimit() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(2, 0, 0);
+        bulkhead.acquire("test");
+        bulkhead.acquire("test");
+        assertEquals(2, bulkhead.getInflight());
+        bulkhead.release();
+        assertEquals(1, bulkhead.getInflight());
+        bulkhead.release();
+        bulkhead.release();
+        assertEquals(0, bulkhead.getInflight());
+    }
+    
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(1, 0, 1000);
+        bulkhead.acquire("test");
+        try {
+            bulkhead.acquire("test");
+            fail();
+        } catch (InternalRestBulkheadFullException e) {
+            assertEquals(1, bulkhead.getRejectedCount());
+        }
+    }
+    
+    @Test
+    public void testRejectAfterMaxWait() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(1, 1, 50);
+        bulkhead.acquire("test");
+        long started = System.currentTimeMillis();
+        try {
+            bulkhead.acquire("test");
+            fail();
+        } catch (InternalRestBulkheadFullException e) {
+            assertTrue(System.currentTimeMillis() - started >= 50);
+            assertEquals(0, bulkhead.getQueued());
+        }
+    }
+    
+    @Test
+    public void testWaiterAcquiresReleasedPermit() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(1, 1, 5000);
+        bulkhead.acquire("test");
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        CountDownLatch done = acquireAsync(bulkhead, error);
+        awaitQueued(bulkhead, 1);
+        bulkhead.release();
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals(1, bulkhead.getInflight());
+    }
+    
+    @Test
+    public void testAllWaitersWokenOnRelease() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(2, 2, 5000);
+        bulkhead.acquire("test");
+        bulkhead.acquire("test");
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        CountDownLatch first = acquireAsync(bulkhead, error);
+        CountDownLatch second = acquireAsync(bulkhead, error);
+        awaitQueued(bulkhead, 2);
+        bulkhead.release();
+        bulkhead.release();
+        assertTrue(first.await(2, TimeUnit.SECONDS));
+        assertTrue(second.await(2, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals(2, bulkhead.getInflight());
+    }
+    
+    @Test
+    public void testRaisedLimitWakesWaiter() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(1, 1, 5000);
+        bulkhead.acquire("test");
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        CountDownLatch done = acquireAsync(bulkhead, error);
+        awaitQueued(bulkhead, 1);
+        bulkhead.setLimits(2, 1, 5000);
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals(2, bulkhead.getInflight());
+    }
+    
+    @Test
+    public void testWaitBoundedByRequestDeadline() throws Exception {
+        InternalRestBulkhead bulkhead = new InternalRestBulkhead(1, 1, 5000);
+        bulkhead.acquire("test");
+        RequestDeadline.set(System.currentTimeMillis() + 50);
+        long started = System.currentTimeMillis();
+        try {
+            bulkhead.acquire("test");
+            fail();
+        } catch (InternalRestDeadlineExceededException e) {
+            assertTrue(System.currentTimeMillis() - started < 5000);
+            assertEquals(1, bulkhead.getRejectedCount());
+        }
+    }
+}
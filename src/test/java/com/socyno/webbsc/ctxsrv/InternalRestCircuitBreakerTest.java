@@ -0,0 +1,162 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.webbsc.ctxsrv.InternalRestCircuitBreaker.Permit;
+import com.socyno.webbsc.ctxsrv.InternalRestCircuitBreaker.State;
+
+public class InternalRestCircuitBreakerTest {
+    
+    private InternalRestCircuitBreaker breaker;
+    
+    @Before
+    public void setUp() {
+        breaker = InternalRestCircuitBreaker.get(String.format("http://breaker-test-%s/", System.nanoTime()));
+        breaker.setMinimumCalls(4);
+        breaker.setFailureRateThreshold(0.5);
+        breaker.setSlowCallMS(1000);
+        breaker.setOpenDurationMS(50);
+    }
+    
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), true, 10);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+    }
+    
+    private void waitOpenDuration() throws InterruptedException {
+        Thread.sleep(breaker.getOpenDurationMS() + 20);
+    }
+    
+    @Test
+    public void testSameBreakerPerUrl() {
+        assertSame(breaker, InternalRestCircuitBreaker.get(breaker.getUrl()));
+        assertEquals(State.CLOSED, InternalRestCircuitBreaker.getStates().get(breaker.getUrl()));
+    }
+    
+    @Test
+    public void testStaysClosedBelowMinimumCalls() {
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.tryAcquire(), true, 10);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        assertNotNull(breaker.tryAcquire());
+    }
+    
+    @Test
+    public void testStaysClosedBelowFailureRate() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(breaker.tryAcquire(), i % 3 == 2, 10);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    public void testOpensOnFailureRate() {
+        trip();
+        assertNull(breaker.tryAcquire());
+    }
+    
+    @Test
+    public void testSlowCallsCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), false, 1000);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+    }
+    
+    @Test
+    public void testUntimedCallsAreNeverSlow() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), false, 60000, false);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getLatencyPercentile(0.5));
+    }
+    
+    @Test
+    public void testHalfOpenAllowsSingleProbe() throws Exception {
+        trip();
+        waitOpenDuration();
+        Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+    }
+    
+    @Test
+    public void testSuccessfulProbeCloses() throws Exception {
+        trip();
+        waitOpenDuration();
+        breaker.record(breaker.tryAcquire(), false, 10);
+        assertEquals(State.CLOSED, breaker.getState());
+        /* 恢复后重新统计，单次失败不会再次熔断 */
+        breaker.record(breaker.tryAcquire(), true, 10);
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    public void testFailedProbeReopens() throws Exception {
+        trip();
+        waitOpenDuration();
+        breaker.record(breaker.tryAcquire(), true, 10);
+        assertEquals(State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+    }
+    
+    @Test
+    public void testStaleResultDoesNotSettleHalfOpen() throws Exception {
+        Permit stale = breaker.tryAcquire();
+        trip();
+        waitOpenDuration();
+        Permit probe = breaker.tryAcquire();
+        assertNotSame(stale, probe);
+        /* 熔断前发出的请求在半开期间完成，不影响状态，也不释放探测许可 */
+        breaker.record(stale, false, 10);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        breaker.record(probe, false, 10);
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    public void testAdaptiveTimeout() {
+        breaker.setAdaptiveTimeoutMultiplier(2);
+        breaker.setAdaptiveTimeoutMinimumMS(100);
+        for (int i = 0; i < 10; i++) {
+            breaker.record(breaker.tryAcquire(), false, 200);
+        }
+        assertEquals(400, breaker.getAdaptiveTimeoutMS());
+        assertEquals(400, breaker.getTimeout(5000));
+        assertEquals(300, breaker.getTimeout(300));
+    }
+    
+    @Test
+    public void testNoAdaptiveTimeoutWithoutSamples() {
+        assertEquals(5000, breaker.getTimeout(5000));
+    }
+    
+    @Test
+    public void testReleasedProbeKeepsHalfOpen() throws InterruptedException {
+        trip();
+        waitOpenDuration();
+        Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        assertNull(breaker.tryAcquire());
+        breaker.release(probe);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        Permit next = breaker.tryAcquire();
+        assertNotNull(next);
+        assertNotSame(probe, next);
+        breaker.record(next, false, 10);
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+}
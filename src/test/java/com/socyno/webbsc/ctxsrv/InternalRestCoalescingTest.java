@@ -0,0 +1,138 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.base.bscexec.MessageException;
+import com.socyno.base.bscmodel.R;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class InternalRestCoalescingTest {
+    
+    private final static int CALLERS = 5;
+    
+    private InternalRestTestServer server;
+    
+    private TestService service;
+    
+    private ExecutorService callers;
+    
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new InternalRestTestServer();
+        service = server.newService();
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        callers.shutdownNow();
+        service.shutdown();
+        server.stop();
+    }
+    
+    /**
+     * 注册在 release 之前一直阻塞的路径
+     */
+    private void respondAfterRelease(String path, final String json) {
+        server.handle(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                InternalRestTestServer.write(exchange, 200, json);
+            }
+        });
+    }
+    
+    /**
+     * 并发发出相同的请求，所有请求均已发出后才让服务端返回
+     */
+    private List<Future<R>> getConcurrently(final String path) throws Exception {
+        final CountDownLatch started = new CountDownLatch(CALLERS);
+        List<Future<R>> results = new ArrayList<Future<R>>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    started.countDown();
+                    return service.get(R.class, path);
+                }
+            }));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        release.countDown();
+        return results;
+    }
+    
+    @Test
+    public void testCoalescesConcurrentGets() throws Exception {
+        respondAfterRelease("/items", InternalRestTestServer.success("[1,2]"));
+        service.setCoalescingGets(true);
+        List<Future<R>> results = getConcurrently("/items");
+        R first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<R> result : results) {
+            assertTrue(first == result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testSharesFailure() throws Exception {
+        respondAfterRelease("/items", "{\"status\":1,\"message\":\"failed\"}");
+        service.setCoalescingGets(true);
+        for (Future<R> result : getConcurrently("/items")) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof MessageException);
+                assertEquals("failed", e.getCause().getMessage());
+            }
+        }
+        assertEquals(1, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        respondAfterRelease("/items", InternalRestTestServer.success("[1,2]"));
+        for (Future<R> result : getConcurrently("/items")) {
+            assertEquals(0, result.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(CALLERS, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testSequentialGetsAreNotShared() throws Exception {
+        server.respond("/items", InternalRestTestServer.success("[1,2]"));
+        service.setCoalescingGets(true);
+        service.get(R.class, "/items");
+        service.get(R.class, "/items");
+        assertEquals(2, server.getHits("/items"));
+    }
+}
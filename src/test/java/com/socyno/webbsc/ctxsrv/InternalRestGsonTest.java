@@ -0,0 +1,97 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+import com.socyno.webbsc.ctxutil.HttpMessageConverter;
+
+public class InternalRestGsonTest {
+    
+    private final static int ROUNDS = 2000;
+    
+    private TestService service;
+    
+    @Before
+    public void setUp() throws Exception {
+        service = new TestService("http://127.0.0.1:1");
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+    }
+    
+    @Test
+    public void testSameInstancePerDateFormat() {
+        service.setDateformat("yyyy/MM/dd");
+        Gson gson = service.getGson();
+        assertSame(gson, service.getGson());
+        service.setDateformat("yyyyMMdd");
+        assertNotSame(gson, service.getGson());
+        service.setDateformat("yyyy/MM/dd");
+        assertSame(gson, service.getGson());
+    }
+    
+    @Test
+    public void testBlankDateFormatUsesSerializerDefault() {
+        Date date = new Date();
+        String expected = String.format("\"%s\"", new SimpleDateFormat("yyyy-MM-dd HH:mm:ssZZ").format(date));
+        service.setDateformat(null);
+        Gson gson = service.getGson();
+        assertEquals(expected, gson.toJson(date));
+        service.setDateformat("");
+        assertSame(gson, service.getGson());
+    }
+    
+    /**
+     * 计时对比：从缓存获取 Gson 实例应明显快于每次重新创建
+     */
+    @Test
+    public void testCachedGsonFasterThanRebuilding() {
+        service.setDateformat("yyyy-MM-dd HH:mm:ss");
+        /* 预热 */
+        for (int i = 0; i < 5; i++) {
+            measureCached();
+            measureRebuilt();
+        }
+        long cached = measureCached();
+        long rebuilt = measureRebuilt();
+        assertTrue(String.format("cached=%dns, rebuilt=%dns", cached, rebuilt), cached * 5 < rebuilt);
+    }
+    
+    /**
+     * 累加实例的哈希值并参与返回值的计算，以免循环被优化掉
+     */
+    private long measureCached() {
+        int hash = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            hash += System.identityHashCode(service.getGson());
+        }
+        return hash == 1 ? 0 : System.nanoTime() - started;
+    }
+    
+    private long measureRebuilt() {
+        int hash = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            hash += System.identityHashCode(new GsonBuilder().disableHtmlEscaping()
+                    .registerTypeAdapter(Date.class,
+                            new HttpMessageConverter.GsonCustomerDateJsonSerializer(service.getDateformat()))
+                    .create());
+        }
+        return hash == 1 ? 0 : System.nanoTime() - started;
+    }
+}
@@ -0,0 +1,118 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.base.bscmodel.R;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class InternalRestHedgingTest {
+    
+    private InternalRestTestServer server;
+    
+    private TestService service;
+    
+    private InternalRestRetryPolicy policy;
+    
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new InternalRestTestServer();
+        service = server.newService();
+        policy = new InternalRestRetryPolicy().setHedging(true).setHedgingPercentile(0.95);
+        service.setRetryPolicy(policy);
+        server.handle("/warm", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InternalRestTestServer.sleep(20);
+                InternalRestTestServer.write(exchange, 200, InternalRestTestServer.success("null"));
+            }
+        });
+        /* 首次请求一直阻塞到 release，之后的请求立即返回 */
+        final AtomicInteger calls = new AtomicInteger();
+        server.handle("/items", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (calls.incrementAndGet() == 1) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                InternalRestTestServer.write(exchange, 200, InternalRestTestServer.success("[1,2]"));
+            }
+        });
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        service.shutdown();
+        server.stop();
+    }
+    
+    private void warmUp(int requests) throws Exception {
+        for (int i = 0; i < requests; i++) {
+            service.get(R.class, "/warm");
+        }
+    }
+    
+    @Test
+    public void testHedgedRequestWins() throws Exception {
+        warmUp(20);
+        long started = System.currentTimeMillis();
+        assertEquals(0, service.get(R.class, "/items").getStatus());
+        assertTrue(System.currentTimeMillis() - started < 3000);
+        assertEquals(2, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testNoHedgingWithoutEnoughSamples() throws Exception {
+        warmUp(5);
+        release.countDown();
+        service.get(R.class, "/items");
+        assertEquals(1, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testNoHedgingWithoutBudget() throws Exception {
+        warmUp(20);
+        policy.setBudgetMaxTokens(0);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                InternalRestTestServer.sleep(300);
+                release.countDown();
+            }
+        }).start();
+        assertEquals(0, service.get(R.class, "/items").getStatus());
+        assertEquals(1, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testNoHedgingForNonIdempotentRequests() throws Exception {
+        warmUp(20);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                InternalRestTestServer.sleep(300);
+                release.countDown();
+            }
+        }).start();
+        service.post(R.class, "/items");
+        assertEquals(1, server.getHits("/items"));
+    }
+}
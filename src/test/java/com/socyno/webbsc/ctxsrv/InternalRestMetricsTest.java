@@ -0,0 +1,90 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.socyno.webbsc.ctxsrv.InternalRestMetrics.Snapshot;
+
+public class InternalRestMetricsTest {
+    
+    private static Map<String, Snapshot> byPath(List<Snapshot> snapshots, String url) {
+        Map<String, Snapshot> result = new HashMap<String, Snapshot>();
+        for (Snapshot snapshot : snapshots) {
+            if (url.equals(snapshot.getUrl())) {
+                result.put(snapshot.getPath(), snapshot);
+            }
+        }
+        return result;
+    }
+    
+    @Test
+    public void testPathTemplates() {
+        InternalRestMetrics metrics = new InternalRestMetrics();
+        assertEquals("/", metrics.getPathTemplate(null));
+        assertEquals("/", metrics.getPathTemplate(""));
+        assertEquals("/", metrics.getPathTemplate("/?page=1"));
+        assertEquals("/users", metrics.getPathTemplate("//users//"));
+        assertEquals("/users/{id}/orders/{id}",
+                metrics.getPathTemplate("/users/123/orders/550e8400-e29b-41d4-a716-446655440000?x=1"));
+        assertEquals("/files/{id}", metrics.getPathTemplate("/files/5f0c2b7e9d3a4c1b2e8f7a6d"));
+        assertEquals("/files/v2", metrics.getPathTemplate("/files/v2"));
+    }
+    
+    @Test
+    public void testManyIdPathsShareTemplate() {
+        InternalRestMetrics metrics = new InternalRestMetrics();
+        for (int i = 0; i < 20000; i++) {
+            metrics.record("http://svc", "/items/" + i, 200, 1, 0, 0, false);
+        }
+        metrics.record("http://svc", "/orders", 200, 1, 0, 0, false);
+        Map<String, Snapshot> snapshots = byPath(metrics.snapshot(), "http://svc");
+        assertEquals(2, snapshots.size());
+        assertEquals(20000, snapshots.get("/items/{id}").getRequests());
+        assertEquals(1, snapshots.get("/orders").getRequests());
+        assertEquals("/orders", metrics.getPathTemplate("/orders"));
+    }
+    
+    @Test
+    public void testEndpointsLimit() {
+        InternalRestMetrics metrics = new InternalRestMetrics();
+        for (int i = 0; i < 2000; i++) {
+            metrics.record("http://svc", "/path-" + i, 200, 1, 0, 0, false);
+        }
+        metrics.record("http://svc", "/new-a", 200, 1, 0, 0, false);
+        metrics.record("http://other", "/new-b", 200, 1, 0, 0, false);
+        Map<String, Snapshot> snapshots = byPath(metrics.snapshot(), "http://svc");
+        assertEquals(2001, snapshots.size());
+        assertEquals(1, snapshots.get("<other>").getRequests());
+        assertEquals(1, byPath(metrics.snapshot(), "http://other").get("<other>").getRequests());
+        metrics.clear();
+        metrics.record("http://svc", "/new-a", 200, 1, 0, 0, false);
+        assertEquals(1, byPath(metrics.snapshot(), "http://svc").get("/new-a").getRequests());
+    }
+    
+    @Test
+    public void testRecordsStatistics() {
+        InternalRestMetrics metrics = new InternalRestMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record("http://svc", "/items/" + i, i <= 90 ? 200 : 503, i, 10, 20, i == 1);
+        }
+        metrics.record("http://svc", "/items/0", 0, 2000, -1, -1, false);
+        Snapshot snapshot = byPath(metrics.snapshot(), "http://svc").get("/items/{id}");
+        assertEquals(101, snapshot.getRequests());
+        assertEquals(1, snapshot.getMessageErrors());
+        assertEquals(1000, snapshot.getRequestBytes());
+        assertEquals(2000, snapshot.getResponseBytes());
+        assertEquals(2000, snapshot.getMax());
+        assertTrue(snapshot.getP50() >= 51 && snapshot.getP50() <= 55);
+        assertTrue(snapshot.getP90() >= 91 && snapshot.getP90() <= 103);
+        assertTrue(snapshot.getP99() >= 100 && snapshot.getP99() <= 103);
+        assertEquals(1, snapshot.getStatuses()[0]);
+        assertEquals(90, snapshot.getStatuses()[2]);
+        assertEquals(10, snapshot.getStatuses()[5]);
+    }
+}
@@ -0,0 +1,203 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class InternalRestPageIteratorTest {
+    
+    /**
+     * 从内存列表中分页获取数据，记录请求过的页码
+     */
+    private static class ListPageIterator extends InternalRestPageIterator<Integer> {
+        
+        private final List<Integer> items;
+        
+        private final List<Integer> loaded = Collections.synchronizedList(new ArrayList<Integer>());
+        
+        private final CompletableFuture<List<?>> pending;
+        
+        private int failedPage = -1;
+        
+        ListPageIterator(List<Integer> items, int pageSize, boolean prefetch, CompletableFuture<List<?>> pending) {
+            super(1, pageSize, prefetch);
+            this.items = items;
+            this.pending = pending;
+        }
+        
+        @Override
+        protected List<?> loadPage(int page, int pageSize) throws IOException {
+            loaded.add(page);
+            if (page == failedPage) {
+                throw new IOException("failed");
+            }
+            int from = Math.min((page - 1) * pageSize, items.size());
+            return items.subList(from, Math.min(from + pageSize, items.size()));
+        }
+        
+        @Override
+        protected CompletableFuture<List<?>> loadPageAsync(int page, int pageSize) {
+            if (pending != null) {
+                loaded.add(page);
+                return pending;
+            }
+            try {
+                return CompletableFuture.<List<?>>completedFuture(loadPage(page, pageSize));
+            } catch (IOException e) {
+                CompletableFuture<List<?>> future = new CompletableFuture<List<?>>();
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+        
+        @Override
+        protected Integer convert(Object item) {
+            return (Integer) item;
+        }
+    }
+    
+    private InternalRestTestServer server;
+    
+    private TestService service;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new InternalRestTestServer();
+        service = server.newService();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        server.stop();
+    }
+    
+    private static List<Integer> drain(InternalRestPageIterator<Integer> iterator) {
+        List<Integer> result = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+    
+    @Test
+    public void testStopsAtShortPage() {
+        ListPageIterator iterator = new ListPageIterator(Arrays.asList(1, 2, 3, 4, 5), 2, false, null);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), drain(iterator));
+        assertEquals(Arrays.asList(1, 2, 3), iterator.loaded);
+        assertEquals(3, iterator.getPages());
+    }
+    
+    @Test
+    public void testStopsAtEmptyPage() {
+        ListPageIterator iterator = new ListPageIterator(Arrays.asList(1, 2, 3, 4), 2, true, null);
+        assertEquals(Arrays.asList(1, 2, 3, 4), drain(iterator));
+        assertEquals(Arrays.asList(1, 2, 3), iterator.loaded);
+        assertFalse(iterator.hasNext());
+    }
+    
+    @Test
+    public void testLoadsLazily() {
+        ListPageIterator iterator = new ListPageIterator(Arrays.asList(1, 2, 3, 4, 5), 2, false, null);
+        assertEquals(Integer.valueOf(1), iterator.next());
+        assertEquals(Integer.valueOf(2), iterator.next());
+        assertEquals(Arrays.asList(1), iterator.loaded);
+        assertEquals(Integer.valueOf(3), iterator.next());
+        assertEquals(Arrays.asList(1, 2), iterator.loaded);
+    }
+    
+    @Test
+    public void testPrefetchesNextPage() {
+        ListPageIterator iterator = new ListPageIterator(Arrays.asList(1, 2, 3, 4, 5), 2, true, null);
+        assertEquals(Integer.valueOf(1), iterator.next());
+        assertEquals(Arrays.asList(1, 2), iterator.loaded);
+    }
+    
+    @Test
+    public void testCloseCancelsPrefetch() {
+        CompletableFuture<List<?>> pending = new CompletableFuture<List<?>>();
+        ListPageIterator iterator = new ListPageIterator(Arrays.asList(1, 2, 3, 4, 5), 2, true, pending);
+        iterator.next();
+        iterator.close();
+        assertTrue(pending.isCancelled());
+        assertFalse(iterator.hasNext());
+    }
+    
+    @Test
+    public void testFailedPage() {
+        ListPageIterator iterator = new ListPageIterator(Arrays.asList(1, 2, 3, 4, 5), 2, false, null);
+        iterator.failedPage = 2;
+        iterator.next();
+        iterator.next();
+        try {
+            iterator.hasNext();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("failed", e.getCause().getMessage());
+        }
+        assertFalse(iterator.hasNext());
+    }
+    
+    /**
+     * 注册按 page 及 limit 参数返回 1..total 中对应页的路径
+     */
+    private void respondPages(String path, final int total) {
+        server.handle(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Map<String, Integer> params = new HashMap<String, Integer>();
+                for (String param : exchange.getRequestURI().getQuery().split("&")) {
+                    String[] pair = param.split("=", 2);
+                    params.put(pair[0], Integer.valueOf(pair[1]));
+                }
+                int limit = params.get("limit");
+                List<String> items = new ArrayList<String>();
+                for (int i = (params.get("page") - 1) * limit + 1; i <= total && items.size() < limit; i++) {
+                    items.add(String.valueOf(i));
+                }
+                InternalRestTestServer.write(exchange, 200,
+                        InternalRestTestServer.success("[" + String.join(",", items) + "]"));
+            }
+        });
+    }
+    
+    @Test
+    public void testIteratesPagesFromService() throws Exception {
+        respondPages("/items", 5);
+        InternalRestPageIterator<Integer> iterator = service.iterate(Integer.class, "/items", null, 2);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), drain(iterator));
+        assertEquals(3, iterator.getPages());
+        assertEquals(3, server.getHits("/items"));
+    }
+    
+    @Test
+    public void testStreamsPagesFromService() throws Exception {
+        respondPages("/items", 3);
+        service.setPagePrefetch(false);
+        try (Stream<Integer> stream = service.stream(Integer.class, "/items", null, 2)) {
+            assertEquals(Arrays.asList(1, 2), stream.limit(2).collect(Collectors.toList()));
+        }
+        assertEquals(1, server.getHits("/items"));
+    }
+}
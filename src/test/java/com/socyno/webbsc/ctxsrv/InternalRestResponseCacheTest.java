@@ -0,0 +1,154 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.socyno.base.bscmodel.R;
+import com.socyno.webbsc.ctxsrv.InternalRestResponseCache.CachedResponse;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+
+public class InternalRestResponseCacheTest {
+    
+    private InternalRestTestServer server;
+    
+    private TestService service;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new InternalRestTestServer();
+        service = server.newService();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        server.stop();
+    }
+    
+    private static HttpResponse response(String... headers) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            response.addHeader(headers[i], headers[i + 1]);
+        }
+        return response;
+    }
+    
+    @Test
+    public void testKeyIgnoresQueryOrder() {
+        InternalRestResponseCache cache = new InternalRestResponseCache(10, 1000);
+        Map<String, Object> query = new LinkedHashMap<String, Object>();
+        query.put("b", 2);
+        query.put("a", 1);
+        Map<String, Object> reversed = new LinkedHashMap<String, Object>();
+        reversed.put("a", 1);
+        reversed.put("b", 2);
+        assertEquals(cache.toKey("http://svc/items", query, null, "R", null),
+                cache.toKey("http://svc/items", reversed, null, "R", null));
+    }
+    
+    @Test
+    public void testKeySeparatesUsersHeadersAndDecoding() {
+        InternalRestResponseCache cache = new InternalRestResponseCache(10, 1000, "token");
+        Map<String, Object> headers = Collections.<String, Object>singletonMap("token", "a");
+        String key = cache.toKey("http://svc/items", null, headers, "R", "alice/null");
+        assertFalse(key.equals(cache.toKey("http://svc/items", null, headers, "R", "bob/null")));
+        assertFalse(key.equals(cache.toKey("http://svc/items", null, headers, "R", "bob/alice")));
+        assertFalse(key.equals(cache.toKey("http://svc/items", null, headers, "R", null)));
+        assertFalse(key.equals(cache.toKey("http://svc/items", null,
+                Collections.<String, Object>singletonMap("token", "b"), "R", "alice/null")));
+        assertFalse(key.equals(cache.toKey("http://svc/items", null, headers, "T", "alice/null")));
+        assertEquals(key, cache.toKey("http://svc/items", null, new HashMap<String, Object>(headers), "R",
+                "alice/null"));
+    }
+    
+    @Test
+    public void testStoreAndLookup() {
+        InternalRestResponseCache cache = new InternalRestResponseCache(10, 60000);
+        assertNull(cache.lookup("k"));
+        cache.store("k", "value", response());
+        CachedResponse entry = cache.lookup("k");
+        assertNotNull(entry);
+        assertTrue(entry.isFresh());
+        assertEquals("value", entry.getValue());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+    
+    @Test
+    public void testCacheControl() {
+        InternalRestResponseCache cache = new InternalRestResponseCache(10, 0);
+        cache.store("no-store", "value", response("Cache-Control", "no-store"));
+        assertNull(cache.lookup("no-store"));
+        /* 默认有效期为 0 且没有 ETag 时无需缓存 */
+        cache.store("expired", "value", response());
+        assertNull(cache.lookup("expired"));
+        cache.store("max-age", "value", response("Cache-Control", "max-age=60"));
+        assertTrue(cache.lookup("max-age").isFresh());
+        cache.store("no-cache", "value", response("Cache-Control", "no-cache", "ETag", "\"v1\""));
+        CachedResponse entry = cache.lookup("no-cache");
+        assertFalse(entry.isFresh());
+        assertEquals("\"v1\"", entry.getEtag());
+        cache.revalidated(entry, response("Cache-Control", "max-age=60"));
+        assertTrue(entry.isFresh());
+        assertEquals(1, cache.getRevalidationCount());
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        InternalRestResponseCache cache = new InternalRestResponseCache(2, 60000);
+        cache.store("a", "a", response());
+        cache.store("b", "b", response());
+        cache.lookup("a");
+        cache.store("c", "c", response());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.lookup("a"));
+        assertNull(cache.lookup("b"));
+    }
+    
+    @Test
+    public void testCachesSuccessfulResponses() throws Exception {
+        server.respond("/ok", InternalRestTestServer.success("{\"name\":\"a\"}"));
+        service.setResponseCache(new InternalRestResponseCache(10, 60000));
+        R first = service.get(R.class, "/ok");
+        R second = service.get(R.class, "/ok");
+        assertEquals(0, first.getStatus());
+        assertTrue(first == second);
+        assertEquals(1, server.getHits("/ok"));
+    }
+    
+    @Test
+    public void testDoesNotCacheFailedStatus() throws Exception {
+        server.respond("/failed", "{\"status\":1,\"message\":\"failed\"}");
+        service.setResponseCache(new InternalRestResponseCache(10, 60000));
+        assertEquals(1, service.get(R.class, "/failed", null, null, false).getStatus());
+        assertEquals(1, service.get(R.class, "/failed", null, null, false).getStatus());
+        assertEquals(2, server.getHits("/failed"));
+        assertEquals(0, service.getResponseCache().size());
+    }
+    
+    @Test
+    public void testDoesNotCacheFailedDecodedData() throws Exception {
+        server.respond("/failed", "{\"status\":1,\"message\":\"failed\",\"data\":{\"name\":\"a\"}}");
+        service.setResponseCache(new InternalRestResponseCache(10, 60000));
+        service.get(Map.class, "/failed", null, null, false);
+        service.get(Map.class, "/failed", null, null, false);
+        assertEquals(2, server.getHits("/failed"));
+        assertEquals(0, service.getResponseCache().size());
+    }
+}
@@ -0,0 +1,155 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URISyntaxException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.reflect.TypeToken;
+import com.socyno.base.bscexec.MessageException;
+import com.socyno.webbsc.ctxsrv.InternalRestTestServer.TestService;
+
+public class InternalRestResponseDataTest {
+    
+    public static class Item {
+        String name;
+        int size;
+    }
+    
+    /**
+     * 重写了 fromObject 的旧式子类，转换时统一加上前缀
+     */
+    static class PrefixService extends TestService {
+        
+        PrefixService(String url) throws URISyntaxException {
+            super(url);
+        }
+        
+        @Override
+        protected <T> T fromObject(Object data, Class<T> clazz) {
+            T result = super.fromObject(data, clazz);
+            if (result instanceof Item) {
+                ((Item) result).name = "prefix-" + ((Item) result).name;
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * 继承旧式子类，但明确声明可流式解析
+     */
+    static class StreamingPrefixService extends PrefixService {
+        
+        StreamingPrefixService(String url) throws URISyntaxException {
+            super(url);
+        }
+        
+        @Override
+        protected boolean isStreamingDecodable() {
+            return true;
+        }
+    }
+    
+    private InternalRestTestServer server;
+    
+    private TestService service;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new InternalRestTestServer();
+        service = server.newService();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        server.stop();
+    }
+    
+    private int paths = 0;
+    
+    private Item getItem(String json, boolean isCheckStatus) throws Exception {
+        String path = "/item" + (++paths);
+        server.respond(path, json);
+        return service.get(Item.class, path, null, null, isCheckStatus);
+    }
+    
+    @Test
+    public void testStatusBeforeData() throws Exception {
+        Item item = getItem("{\"status\":0,\"message\":\"ok\",\"data\":{\"name\":\"a\",\"size\":2}}", true);
+        assertEquals("a", item.name);
+        assertEquals(2, item.size);
+    }
+    
+    @Test
+    public void testDataBeforeStatus() throws Exception {
+        Item item = getItem("{\"data\":{\"name\":\"a\",\"size\":2},\"other\":[1,{}],\"status\":0}", true);
+        assertEquals("a", item.name);
+        assertEquals(2, item.size);
+    }
+    
+    @Test
+    public void testDataBeforeFailedStatus() throws Exception {
+        try {
+            getItem("{\"data\":{\"name\":\"a\"},\"message\":\"failed\",\"status\":1}", true);
+            fail();
+        } catch (MessageException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void testFailedStatusWithoutCheck() throws Exception {
+        assertEquals("a", getItem("{\"status\":1,\"message\":\"failed\",\"data\":{\"name\":\"a\"}}", false).name);
+        assertEquals("b", getItem("{\"data\":{\"name\":\"b\"},\"status\":1}", false).name);
+    }
+    
+    @Test
+    public void testNullOrMissingData() throws Exception {
+        assertNull(getItem("{\"status\":0,\"data\":null}", true));
+        assertNull(getItem("{\"status\":0}", true));
+    }
+    
+    @Test
+    public void testGenericDataType() throws Exception {
+        server.respond("/items", "{\"data\":[{\"name\":\"a\"},{\"name\":\"b\"}],\"status\":0}");
+        List<Item> items = service.get(new TypeToken<List<Item>>() {}, "/items");
+        assertEquals(2, items.size());
+        assertEquals("b", items.get(1).name);
+    }
+    
+    @Test(expected = MessageException.class)
+    public void testNonObjectBody() throws Exception {
+        getItem("[1,2]", true);
+    }
+    
+    @Test(expected = MessageException.class)
+    public void testEmptyBody() throws Exception {
+        getItem("", true);
+    }
+    
+    @Test
+    public void testOverriddenFromObjectKeepsLegacyDecoding() throws Exception {
+        server.respond("/legacy", "{\"status\":0,\"data\":{\"name\":\"a\"}}");
+        PrefixService legacy = new PrefixService(server.getUrl());
+        StreamingPrefixService streaming = new StreamingPrefixService(server.getUrl());
+        try {
+            assertTrue(service.isStreamingDecodable());
+            assertFalse(legacy.isStreamingDecodable());
+            assertEquals("prefix-a", legacy.get(Item.class, "/legacy", null, null, true).name);
+            assertTrue(streaming.isStreamingDecodable());
+            assertEquals("a", streaming.get(Item.class, "/legacy", null, null, true).name);
+        } finally {
+            legacy.shutdown();
+            streaming.shutdown();
+        }
+    }
+}
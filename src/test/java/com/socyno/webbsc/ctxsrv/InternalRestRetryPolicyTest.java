@@ -0,0 +1,88 @@
+package com.socyno.webbsc.ctxsrv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Test;
+
+public class InternalRestRetryPolicyTest {
+    
+    @Test
+    public void testBudgetStartsFull() {
+        InternalRestRetryPolicy policy = new InternalRestRetryPolicy().setBudgetMaxTokens(3);
+        assertTrue(policy.tryAcquireRetry());
+        assertTrue(policy.tryAcquireRetry());
+        assertTrue(policy.tryAcquireRetry());
+        assertFalse(policy.tryAcquireRetry());
+    }
+    
+    @Test
+    public void testRaisedBudgetStartsFull() {
+        InternalRestRetryPolicy policy = new InternalRestRetryPolicy().setBudgetMaxTokens(12);
+        for (int i = 0; i < 12; i++) {
+            assertTrue(policy.tryAcquireRetry());
+        }
+        assertFalse(policy.tryAcquireRetry());
+        /* 已消耗的预算不因调整上限而恢复 */
+        policy.setBudgetMaxTokens(20);
+        assertFalse(policy.tryAcquireRetry());
+    }
+    
+    @Test
+    public void testBudgetRefillsByRequests() {
+        InternalRestRetryPolicy policy = new InternalRestRetryPolicy().setBudgetMaxTokens(1).setBudgetRatio(0.25);
+        assertTrue(policy.tryAcquireRetry());
+        assertFalse(policy.tryAcquireRetry());
+        for (int i = 0; i < 3; i++) {
+            policy.onRequest();
+        }
+        assertFalse(policy.tryAcquireRetry());
+        policy.onRequest();
+        assertTrue(policy.tryAcquireRetry());
+        assertFalse(policy.tryAcquireRetry());
+    }
+    
+    @Test
+    public void testBudgetIsCapped() {
+        InternalRestRetryPolicy policy = new InternalRestRetryPolicy().setBudgetMaxTokens(2).setBudgetRatio(1);
+        for (int i = 0; i < 10; i++) {
+            policy.onRequest();
+        }
+        assertTrue(policy.tryAcquireRetry());
+        assertTrue(policy.tryAcquireRetry());
+        assertFalse(policy.tryAcquireRetry());
+    }
+    
+    @Test
+    public void testRetryableExceptions() {
+        InternalRestRetryPolicy policy = new InternalRestRetryPolicy();
+        assertTrue(policy.isRetryable(new ConnectException()));
+        assertTrue(policy.isRetryable(new ConnectTimeoutException()));
+        assertTrue(policy.isRetryable(new SocketTimeoutException()));
+        assertFalse(policy.isRetryable(new InterruptedIOException()));
+        policy.setRetryOnTimeout(false);
+        assertFalse(policy.isRetryable(new SocketTimeoutException()));
+        assertTrue(policy.isRetryable(new ConnectTimeoutException()));
+        assertTrue(policy.isRetryable(new IOException()));
+    }
+    
+    @Test
+    public void testBackoffIsBounded() {
+        InternalRestRetryPolicy policy = new InternalRestRetryPolicy().setInitialBackoffMS(100)
+                .setBackoffMultiplier(2).setMaxBackoffMS(300);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.getBackoffMS(1);
+            long third = policy.getBackoffMS(3);
+            assertTrue(first >= 0 && first <= 100);
+            assertTrue(third >= 0 && third <= 300);
+        }
+        assertEquals(0, policy.setInitialBackoffMS(0).getBackoffMS(2));
+    }
+}
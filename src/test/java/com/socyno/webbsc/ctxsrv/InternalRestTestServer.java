@@ -0,0 +1,134 @@
+package com.socyno.webbsc.ctxsrv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.socyno.base.bscservice.HttpUtil;
+import com.socyno.webbsc.ctxutil.ContextHttpClient;
+import com.socyno.webbsc.ctxutil.ContextHttpPoolConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 测试用的本地 HTTP 服务，记录各路径的请求次数，并提供通过独立连接池访问它的内部服务
+ */
+class InternalRestTestServer {
+    
+    /**
+     * 通过独立连接池发送请求的内部服务（支持中止请求）
+     */
+    static class TestService extends AbstractInternalRestService {
+        
+        private final ContextHttpClient client = new ContextHttpClient(new ContextHttpPoolConfig());
+        
+        TestService(String url) throws URISyntaxException {
+            super(url, 5000);
+            setMetricsSink(null);
+        }
+        
+        TestService(List<String> urls) throws URISyntaxException {
+            super(urls, 5000, "UTF-8");
+            setMetricsSink(null);
+        }
+        
+        @Override
+        protected HttpUtil getHttpClient() {
+            return client;
+        }
+        
+        void shutdown() throws IOException {
+            client.shutdown();
+        }
+    }
+    
+    private final HttpServer server;
+    
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    
+    private final ConcurrentMap<String, AtomicInteger> hits = new ConcurrentHashMap<String, AtomicInteger>();
+    
+    InternalRestTestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.start();
+    }
+    
+    String getUrl() {
+        return String.format("http://127.0.0.1:%s", server.getAddress().getPort());
+    }
+    
+    TestService newService() throws URISyntaxException {
+        return new TestService(getUrl());
+    }
+    
+    /**
+     * 注册路径的处理器，处理前记录请求次数
+     */
+    void handle(final String path, final HttpHandler handler) {
+        hits.putIfAbsent(path, new AtomicInteger());
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                hits.get(path).incrementAndGet();
+                try {
+                    handler.handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+    
+    /**
+     * 注册固定返回给定 JSON 内容的路径
+     */
+    void respond(String path, final String json) {
+        handle(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                write(exchange, 200, json);
+            }
+        });
+    }
+    
+    int getHits(String path) {
+        AtomicInteger count;
+        return (count = hits.get(path)) == null ? 0 : count.get();
+    }
+    
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    static void write(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream output = exchange.getResponseBody();
+        output.write(bytes);
+        output.flush();
+    }
+    
+    static String success(String data) {
+        return String.format("{\"status\":0,\"message\":\"ok\",\"data\":%s}", data);
+    }
+    
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}